@@ -5,19 +5,34 @@ import com.luxlunaris.openarticlereader.control.interfaces.PageListener;
 import com.luxlunaris.openarticlereader.control.interfaces.Pageable;
 import com.luxlunaris.openarticlereader.model.classes.Article;
 import com.luxlunaris.openarticlereader.model.classes.Copier;
+import com.luxlunaris.openarticlereader.model.classes.DownloadExecutor;
+import com.luxlunaris.openarticlereader.model.classes.DownloadJournal;
 import com.luxlunaris.openarticlereader.model.classes.Downloader;
+import com.luxlunaris.openarticlereader.model.classes.HttpCache;
+import com.luxlunaris.openarticlereader.model.classes.HttpClient;
+import com.luxlunaris.openarticlereader.model.classes.IndexingQueue;
+import com.luxlunaris.openarticlereader.model.classes.InvertedIndex;
+import com.luxlunaris.openarticlereader.model.classes.MetadataCatalog;
+import com.luxlunaris.openarticlereader.model.classes.PAGE_TAGS;
+import com.luxlunaris.openarticlereader.model.classes.PageManifest;
+import com.luxlunaris.openarticlereader.model.classes.TimeOrderedPages;
+import com.luxlunaris.openarticlereader.model.classes.UrlIndex;
 import com.luxlunaris.openarticlereader.model.classes.WebsiteData;
-import com.luxlunaris.openarticlereader.model.classes.comparators.LastModifiedComparator;
 import com.luxlunaris.openarticlereader.model.interfaces.Page;
 import com.luxlunaris.openarticlereader.model.services.FileIO;
+import com.luxlunaris.openarticlereader.model.services.KeywordMatcher;
 
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This is a facade controller that maintains a list of all of the user's pages,
@@ -48,46 +63,112 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 	private static final String PAGES_RECYCLE_BIN = Paths.PAGES_RECYCLE_BIN;
 
 	/**
-	 * List of pages loaded in memory
+	 * The pages loaded in memory, newest first
 	 */
-	private static ArrayList<Page> pagesList;
+	private static TimeOrderedPages pages;
 
 	/**
-	 * List of pages selected by the user
+	 * The pages selected by the user, by path (guarded by selectionLock)
 	 */
-	private static ArrayList<Page> selectedPagesList;
+	private static LinkedHashMap<String, Page> selectedPages;
 
 	/**
-	 * The list of pages in the recycle bin.
+	 * The pages in the recycle bin, by id (loaded when first needed, guarded by recycleBinLock).
 	 */
-	private static ArrayList<Page> recycleBin;
+	private static LinkedHashMap<String, Page> recycleBin;
 
 	/**
-	 * Current page index
+	 * Each collection has its own lock, so that (eg) selecting pages
+	 * doesn't wait for a download to get added.
 	 */
-	static int currentPage;
+	private static final Object selectionLock = new Object();
+	private static final Object recycleBinLock = new Object();
+
+	/**
+	 * The id given to the last page created by this Notebook.
+	 */
+	private static long lastNewPageId;
+
+	/**
+	 * Summarizes the pages on disk, so they can be listed at startup
+	 * without visiting their directories.
+	 */
+	private static PageManifest manifest;
 
 	/**
 	 * Listens to this Notebook to receive updates on the status
 	 * of the Pages therein.
 	 */
-	private static NotebookListener listener;
+	private static volatile NotebookListener listener;
+
+	/**
+	 * The ids of the pages, by the (normalized) urls they were downloaded from.
+	 * (The pages in the recycle bin aren't there: they can be downloaded again).
+	 */
+	private static UrlIndex urlIndex;
 
 	/**
 	 * The object that downloads and async-returns content from the web.
 	 */
 	private static Downloader downloader;
 
+	/**
+	 * The full-text search index of the pages (opened in the background, see indexReady).
+	 */
+	private static InvertedIndex index;
+
+	/**
+	 * Applies the changes to the pages to the search index, in the background.
+	 */
+	private static IndexingQueue indexingQueue;
+
+	/**
+	 * False while the index is still being opened, or missing some of the existing pages.
+	 */
+	private static volatile boolean indexReady;
+
+	/**
+	 * How many pages go in a single index segment when (re)building the index.
+	 */
+	private static final int PAGES_PER_INDEX_SEGMENT = 500;
+
 
 	private Notebook() {
-		pagesList = new ArrayList<>();
-		selectedPagesList = new ArrayList<>();
-		recycleBin = new ArrayList<>();
-		loadPages();
-		loadRecycleBin();
-		rewind();
-		downloader = new Downloader();
+		//before any request: keep an idle connection for each download a host can have at once
+		HttpClient.setMaxIdleConnectionsPerHost(Settings.getInt(SETTINGS_TAGS.MAX_DOWNLOADS_PER_HOST));
+
+		//the pages' tags are stored in a single catalog
+		MetadataCatalog.setDefault(MetadataCatalog.open(Paths.APP_DIR_PATH));
+		pages = new TimeOrderedPages();
+		selectedPages = new LinkedHashMap<>();
+		manifest = new PageManifest(Paths.PAGES_MANIFEST_PATH);
+		urlIndex = new UrlIndex();
+
+		if(manifest.isEmpty()){
+			//first start (or lost manifest): visit the directories
+			loadPages();
+			loadRecycleBin();
+		}else{
+			loadPagesFromManifest();
+		}
+
+		indexingQueue = new IndexingQueue();
+		downloader = new Downloader(Paths.DOWNLOADS_STAGING_DIR,
+				Settings.getInt(SETTINGS_TAGS.MAX_CONCURRENT_DOWNLOADS),
+				Settings.getInt(SETTINGS_TAGS.MAX_DOWNLOADS_PER_HOST),
+				Settings.getInt(SETTINGS_TAGS.MAX_IMAGE_SIZE_KB)*1024L,
+				Settings.getInt(SETTINGS_TAGS.IMAGE_DOWNLOAD_BUDGET_KB)*1024L);
+		downloader.setCrawlLimits(Settings.getInt(SETTINGS_TAGS.CRAWL_MAX_DEPTH), Settings.getInt(SETTINGS_TAGS.CRAWL_POLITENESS_DELAY_MS));
+		downloader.setTimeouts(Settings.getInt(SETTINGS_TAGS.HTTP_CONNECT_TIMEOUT_MS), Settings.getInt(SETTINGS_TAGS.HTTP_READ_TIMEOUT_MS));
+		downloader.setCache(new HttpCache(Paths.HTTP_CACHE_DIR, Settings.getInt(SETTINGS_TAGS.HTTP_CACHE_SIZE_KB)*1024L));
+		downloader.setJournal(new DownloadJournal(Paths.DOWNLOAD_JOURNAL_PATH));
 		downloader.addListener(this);
+
+		//the rest gets read from disk in the background
+		//(the cache gets loaded by the first download that needs it)
+		loadIndex();
+		restoreDownloads();
+		reconcileManifest();
 	}
 
 	/**
@@ -106,10 +187,12 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 	 */
 	@Override
 	public void onSelected(Page page) {
-		if(page.isSelected()){
-			selectedPagesList.add(page);
-		}else{
-			selectedPagesList.remove(page);
+		synchronized (selectionLock){
+			if(page.isSelected()){
+				selectedPages.put(((File)page).getPath(), page);
+			}else{
+				selectedPages.remove(((File)page).getPath());
+			}
 		}
 	}
 
@@ -118,7 +201,24 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 	 * Returns an array of the selected pages
 	 */
 	public Page[] getSelected(){
-		return selectedPagesList.toArray(new Page[0]);
+		synchronized (selectionLock){
+			return selectedPages.values().toArray(new Page[0]);
+		}
+	}
+
+	/**
+	 * Get a page (or a page in the recycle bin) by its id.
+	 * @param id
+	 * @return null if there's no such page.
+	 */
+	public Page getById(String id){
+		Page page = pages.get(id);
+		if(page!=null){
+			return page;
+		}
+		synchronized (recycleBinLock){
+			return getRecycleBinMap().get(id);
+		}
 	}
 
 
@@ -129,14 +229,29 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 	@Override
 	public void onDeleted(Page page) {
 
+		//remove the page from the search index (pages in the recycle bin aren't indexed)
+		if(!page.isInRecycleBin()){
+			indexingQueue.enqueueRemoval(page);
+		}
+
+		//the page isn't in its directory anymore
+		manifest.remove(page.getName(), page.isInRecycleBin());
+
+		//its webpage can be downloaded again
+		if(!page.isInRecycleBin()){
+			urlIndex.removePage(page.getName());
+		}
+
 		//add deleted page to recycle-bin
 		putInRecycleBin(page);
 
 		//remove the page from the "selected" list
-		selectedPagesList.remove(page);
+		synchronized (selectionLock){
+			selectedPages.remove(((File)page).getPath());
+		}
 
 		//remove the page from the pages list
-		pagesList.remove(page);
+		pages.remove(page);
 
 		//propagate the news about its deletion.
 		try {
@@ -148,14 +263,22 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 	@Override
 	public void onModified(Page page) {
 
+		//move the page to its new position
+		PageManifest.Entry entry = updateManifest(page);
+		if(!entry.inRecycleBin){
+			pages.update(page, entry.lastModified);
+		}
+
+		//re-index the page's new text
+		if(!page.isInRecycleBin()){
+			indexingQueue.enqueueUpdate(page);
+		}
+
 		try{
 			listener.onModified(page);
 		}catch (NullPointerException e){
 		}
 
-		//re-sort the list of pages.
-		//Collections.sort(pagesList, new LastModifiedComparator());
-
 	}
 
 	@Override
@@ -164,6 +287,11 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 		//add page to
 		addPage(page);
 
+		//index the page (its text gets read later, once it's written)
+		if(!page.isInRecycleBin()){
+			indexingQueue.enqueueUpdate(page);
+		}
+
 		try{
 			listener.onCreated(page);
 		}catch (NullPointerException e){
@@ -173,27 +301,47 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 
 
 	/**
-	 * Returns the next batch of pages
+	 * Get a new cursor, placed before the newest page.
+	 * @return
+	 */
+	@Override
+	public Cursor newCursor() {
+		return new PageCursor();
+	}
+
+	/**
+	 * Returns the next batch of pages after a cursor:
+	 * a seek in the time-ordered index, that's not thrown off
+	 * by pages added or removed in the meantime.
+	 * @param cursor
 	 * @param amount
 	 * @return
 	 */
 	@Override
-	public Page[] getNext(int amount) {
+	public Page[] getNext(Cursor cursor, int amount) {
+
+		PageCursor pageCursor = (PageCursor) cursor;
 
+		synchronized (pageCursor){
 
-		//calculating the amount of pages left to deliver
-		amount = Math.min(amount, pagesList.size() -currentPage );
+			if(pageCursor.discarded){
+				return new Page[0];
+			}
 
-		List<Page> result = new ArrayList<>();
+			//the pages that follow the last one delivered
+			List<Map.Entry<TimeOrderedPages.Key, Page>> batch = pages.next(pageCursor.lastDelivered, amount);
 
-		try{
-			result = pagesList.subList(currentPage, currentPage+amount);
-			currentPage+=amount;
-		}catch (Exception e){
+			Page[] result = new Page[batch.size()];
+			for(int i=0; i<result.length; i++){
+				result[i] = batch.get(i).getValue();
+			}
 
-		}
+			if(!batch.isEmpty()){
+				pageCursor.lastDelivered = batch.get(batch.size()-1).getKey();
+			}
 
-		return result.toArray(new Page[0]);
+			return result;
+		}
 
 	}
 	
@@ -208,17 +356,27 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 			@Override
 			public void run() {
 
-				String[] keywords = query.split("\\s+");
-				ArrayList<Page> result = new ArrayList<>(pagesList);
+				String[] keywords = query.trim().split("\\s+");
 
-				for (Page page : pagesList) {
-					if (page.contains(keywords)) {
+				//the index isn't complete yet: scan every page
+				if(!indexReady){
+					KeywordMatcher matcher = new KeywordMatcher(keywords);
+					for (Page page : pages.snapshot()) {
+						if (page.contains(matcher)) {
 
-						//as soon as you find a page that fits the keywords tell the
-						//listener to display it.
-						listener.onCreated(page);
+							//as soon as you find a page that fits the keywords tell the
+							//listener to display it.
+							listener.onCreated(page);
 
+						}
 					}
+					return;
+				}
+
+				//ask the index for the names of the pages that fit the keywords,
+				//and look them up by name (newest first)
+				for (Page page : pages.getAll(Arrays.asList(index.search(keywords)))) {
+					listener.onCreated(page);
 				}
 
 			}
@@ -227,6 +385,77 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 		t.start();
 	}
 
+	/**
+	 * Open the search index in the background, and (re-)index the pages
+	 * it's missing or that changed since they were indexed (eg: their
+	 * update was still queued when the app got killed).
+	 * Then hand it to the indexing queue (that holds the updates until then).
+	 */
+	private void loadIndex(){
+
+		new Thread(){
+			public void run(){
+
+				InvertedIndex index = new InvertedIndex(Paths.INDEX_DIR);
+
+				ArrayList<Page> stale = new ArrayList<>();
+				for(Page page : pages.snapshot()){
+					if(index.getStamp(page.getName())!=page.getLastModifiedTime()){
+						stale.add(page);
+					}
+				}
+
+				//pages whose removal didn't make it to the index
+				ArrayList<String> gone = new ArrayList<>();
+				for(String name : index.getNames()){
+					if(pages.get(name)==null){
+						gone.add(name);
+					}
+				}
+
+				if(!gone.isEmpty()){
+					index.update(new HashMap<String, String>(), new HashMap<String, Long>(), gone);
+				}
+				for(int i=0; i<stale.size(); i+=PAGES_PER_INDEX_SEGMENT){
+					List<Page> chunk = stale.subList(i, Math.min(i+PAGES_PER_INDEX_SEGMENT, stale.size()));
+					HashMap<String, Long> stamps = new HashMap<>();
+					index.addAll(getTexts(chunk, stamps), stamps);
+				}
+
+				Notebook.index = index;
+				indexReady = true;
+				indexingQueue.setIndex(index);
+			}
+		}.start();
+	}
+
+	/**
+	 * Queue again (in the background) the downloads that weren't done when the app got closed.
+	 */
+	private void restoreDownloads(){
+
+		new Thread(){
+			public void run(){
+				downloader.restore();
+			}
+		}.start();
+	}
+
+	/**
+	 * Get the plain text of each page, by page name.
+	 * @param pages
+	 * @param stamps gets the last-modified time of each page, as of when its text was read.
+	 * @return
+	 */
+	private HashMap<String, String> getTexts(List<Page> pages, Map<String, Long> stamps){
+		HashMap<String, String> texts = new HashMap<>();
+		for(Page page : pages){
+			stamps.put(page.getName(), page.getLastModifiedTime());
+			texts.put(page.getName(), page.getText());
+		}
+		return texts;
+	}
+
 
 	/**
 	 * Load pages to memory from their directory
@@ -239,32 +468,208 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 			pagesDir.mkdirs();
 		}
 
-		//list and load all of the folders in there
+		//list and load all of the folders in there (they get sorted as they're added)
 		for(File file : pagesDir.listFiles()) {
 			Page page = new Article(file.getPath());
 			addPage(page);
 		}
+	}
+
+	/**
+	 * Load pages to memory from the manifest, without visiting their directories.
+	 * (The pages of the recycle bin get loaded when first needed).
+	 */
+	private void loadPagesFromManifest(){
+
+		//the entries come newest first
+		for(PageManifest.Entry entry : manifest.getEntries()){
+			if(!entry.inRecycleBin){
+				Page page = fromManifest(entry, PAGES_DIR);
+				pages.add(page, entry.lastModified);
+				indexUrls(page);
+			}
+		}
+	}
+
+	/**
+	 * Make a page from its manifest entry, and start listening to it.
+	 * @param entry
+	 * @param dirPath
+	 * @return
+	 */
+	private Page fromManifest(PageManifest.Entry entry, String dirPath){
+		Article page = new Article(dirPath+File.separator+entry.id);
+		page.setKnownPreview(entry.preview, entry.lastModified);
+		page.addListener(this);
+		return page;
+	}
+
+	/**
+	 * Get a unique id for a new page: the current time,
+	 * unless another page already got it (eg: concurrent downloads).
+	 * @return
+	 */
+	private static synchronized String newPageId(){
+		long id = Math.max(System.currentTimeMillis(), lastNewPageId+1);
+		while(new File(PAGES_DIR+File.separator+id).exists()){
+			id++;
+		}
+		lastNewPageId = id;
+		return id+"";
+	}
+
+	/**
+	 * Record the current state of a page in the manifest.
+	 * @param page
+	 * @return the page's new entry.
+	 */
+	private PageManifest.Entry updateManifest(Page page){
+
+		boolean inRecycleBin = new File(PAGES_RECYCLE_BIN).equals(((File)page).getParentFile());
+
+		String preview = page.getPreview();
+		preview = preview.substring(0, preview.length()-1);
+
+		PageManifest.Entry entry = new PageManifest.Entry(page.getName(), inRecycleBin, page.getLastModifiedTime(), page.getLongTag(PAGE_TAGS.CREATION_TIME), preview);
+		manifest.put(entry);
+		return entry;
+	}
+
+	/**
+	 * Compare the manifest to the directories in the background,
+	 * picking up whatever changed behind its back (eg: if the app got killed).
+	 */
+	private void reconcileManifest(){
+
+		new Thread(){
+			public void run(){
+				reconcile(PAGES_DIR, false);
+				reconcile(PAGES_RECYCLE_BIN, true);
+			}
+		}.start();
+	}
+
+	/**
+	 * Reconcile the manifest with the pages in a directory.
+	 * @param dirPath
+	 * @param inRecycleBin
+	 */
+	private void reconcile(String dirPath, boolean inRecycleBin){
+
+		File dir = new File(dirPath);
+		if(!dir.exists()){
+			dir.mkdirs();
+		}
+
+		HashSet<String> onDisk = new HashSet<>();
+
+		for(File file : dir.listFiles()){
+
+			onDisk.add(file.getName());
+
+			PageManifest.Entry entry = manifest.get(file.getName(), inRecycleBin);
+			Article page = new Article(file.getPath());
+
+			if(entry!=null){
+				//changed behind the manifest's back
+				if(entry.lastModified!=page.getLastModifiedTime()){
+					entry = updateManifest(page);
+					if(!inRecycleBin){
+						pages.update(page, entry.lastModified);
+					}
+				}
+				continue;
+			}
+
+			//a page the manifest doesn't know about (unless it's just being created)
+			if(!inRecycleBin && pages.contains(page)){
+				continue;
+			}
+
+			if(inRecycleBin){
+				updateManifest(page);
+				page.addListener(this);
+				synchronized (recycleBinLock){
+					if(recycleBin!=null){
+						recycleBin.put(page.getName(), page);
+					}
+				}
+				continue;
+			}
+
+			addPage(page);
+			indexingQueue.enqueueUpdate(page);
+			try{
+				listener.onCreated(page);
+			}catch (NullPointerException e){
+			}
+		}
+
+		//pages in the manifest that don't exist anymore
+		for(PageManifest.Entry entry : manifest.getEntries()){
+
+			if(entry.inRecycleBin!=inRecycleBin || onDisk.contains(entry.id)){
+				continue;
+			}
+
+			//(it may have been created after the directory was listed)
+			if(new File(dirPath+File.separator+entry.id).exists()){
+				continue;
+			}
 
-		//sort the pages by time of creation
-		Collections.sort(pagesList, new LastModifiedComparator());
+			manifest.remove(entry.id, inRecycleBin);
+
+			if(inRecycleBin){
+				synchronized (recycleBinLock){
+					if(recycleBin!=null){
+						recycleBin.remove(entry.id);
+					}
+				}
+				continue;
+			}
+
+			Page page = new Article(dirPath+File.separator+entry.id);
+			pages.remove(page);
+			indexingQueue.enqueueRemoval(page);
+			try{
+				listener.onDeleted(page);
+			}catch (NullPointerException e){
+			}
+		}
 	}
 
 
 	/**
-	 * Add a page to the list and start listening to it
+	 * Add a page to the list (and to the manifest) and start listening to it
 	 * @param page
 	 */
 	private void addPage(Page page){
 
 		//don't add the same page twice
-		if(pagesList.contains(page)){
+		if(pages.contains(page)){
+			return;
+		}
+
+		//add the page at its place (list sorted newest first),
+		//unless another thread just did
+		PageManifest.Entry entry = updateManifest(page);
+		if(!pages.add(page, entry.lastModified)){
 			return;
 		}
 
+		indexUrls(page);
+
 		//start listening to the new page
 		page.addListener(this);
-		//add the page at beginning (list sorted newest first)
-		pagesList.add(0, page);
+	}
+
+	/**
+	 * Add the urls a page was downloaded from (if any) to the url index.
+	 * @param page
+	 */
+	private void indexUrls(Page page){
+		urlIndex.put(page.getStringTag(PAGE_TAGS.SOURCE_URL), page.getName());
+		urlIndex.put(page.getStringTag(PAGE_TAGS.REQUESTED_URL), page.getName());
 	}
 
 
@@ -272,14 +677,21 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 	 * Mark all Pages as selected
 	 */
 	public void selectAll(){
-		selectedPagesList = new ArrayList<>(pagesList);
+		synchronized (selectionLock){
+			selectedPages.clear();
+			for(Page page : pages.snapshot()){
+				selectedPages.put(((File)page).getPath(), page);
+			}
+		}
 	}
 
 	/**
 	 * Mark all pages as unselected
 	 */
 	public void unselectAll(){
-		selectedPagesList.clear();
+		synchronized (selectionLock){
+			selectedPages.clear();
+		}
 	}
 
 	/**
@@ -291,10 +703,29 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 	}
 
 	/**
-	 * The next batch of pages to deliver is reset to the initial one.
+	 * Forget a cursor: it won't return any more pages.
+	 * @param cursor
+	 */
+	@Override
+	public void discard(Cursor cursor) {
+		PageCursor pageCursor = (PageCursor) cursor;
+		synchronized (pageCursor){
+			pageCursor.discarded = true;
+			pageCursor.lastDelivered = null;
+		}
+	}
+
+	/**
+	 * The position of a consumer of pages: the key of the last page it got.
 	 */
-	public void rewind(){
-		currentPage = 0;
+	private static class PageCursor implements Cursor {
+
+		/**
+		 * null: no pages delivered yet
+		 */
+		TimeOrderedPages.Key lastDelivered;
+
+		boolean discarded;
 	}
 
 	/**
@@ -306,7 +737,12 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 
 		new Thread(){
 			public void run(){
+				//the backup carries the pages' tags in their own metadata files
+				List<File> metadataFiles = MetadataCatalog.open(Paths.APP_DIR_PATH).exportLegacyFiles(PAGES_DIR);
 				File file = FileIO.zipDir(PAGES_DIR, Paths.PAGES_BACKUP_DIR);
+				for(File metadataFile : metadataFiles){
+					metadataFile.delete();
+				}
 				listener.onBackupReady(file);
 			}
 		}.start();
@@ -332,9 +768,12 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 
 			//copy each file from the unzipped file
 			try {
-				FileUtils.copyDirectory(file, new File(PAGES_DIR+File.separator+file.getName()));
-				Page page = new Article(file.getPath());
+				File copy = new File(PAGES_DIR+File.separator+file.getName());
+				FileUtils.copyDirectory(file, copy);
+				//(imports the copy's metadata files into the catalog)
+				Page page = new Article(copy.getPath());
 				addPage(page);
+				indexingQueue.enqueueUpdate(page);
 				listener.onCreated(page);
 			} catch (IOException e) {
 				e.printStackTrace();
@@ -356,7 +795,9 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 		//if page is already in the recycle bin, remove it.
 		//It means it's getting deleted forever.
 		if(page.isInRecycleBin()){
-			recycleBin.remove(page);
+			synchronized (recycleBinLock){
+				getRecycleBinMap().remove(page.getName());
+			}
 			return;
 		}
 
@@ -366,8 +807,11 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 		new Copier().copy(page, copy);
 		copy.setInRecycleBin(true);
 
-		recycleBin.add(copy);
+		synchronized (recycleBinLock){
+			getRecycleBinMap().put(copy.getName(), copy);
+		}
 		copy.addListener(this);
+		updateManifest(copy);
 	}
 
 	/**
@@ -381,7 +825,9 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 			return;
 		}
 
-		recycleBin.remove(page);
+		synchronized (recycleBinLock){
+			getRecycleBinMap().remove(page.getName());
+		}
 
 		Page restoredCopy = new Article(PAGES_DIR+File.separator+page.getName());
 		restoredCopy.addListener(this);
@@ -389,6 +835,11 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 
 		new Copier().copy(page, restoredCopy);
 		restoredCopy.setInRecycleBin(false);
+		updateManifest(restoredCopy);
+		indexUrls(restoredCopy);
+
+		//the copied text doesn't notify anybody
+		indexingQueue.enqueueUpdate(restoredCopy);
 
 		page.delete();
 
@@ -400,10 +851,14 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 	 */
 	public void emptyRecycleBin(){
 		for(Page page : getRecycleBin()){
+			manifest.remove(page.getName(), true);
 			FileIO.deleteDirectory(((File)page).getPath() );
+			MetadataCatalog.metadataOf(((File)page).getPath()).discard();
+			synchronized (recycleBinLock){
+				getRecycleBinMap().remove(page.getName());
+			}
 			listener.onDeleted(page);
 		}
-		recycleBin.clear();
 	}
 
 	/**
@@ -411,7 +866,29 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 	 * @return
 	 */
 	public Page[] getRecycleBin(){
-		return recycleBin.toArray(new Page[0]);
+		synchronized (recycleBinLock){
+			return getRecycleBinMap().values().toArray(new Page[0]);
+		}
+	}
+
+	/**
+	 * Get the pages in the recycle bin by id,
+	 * loading them from the manifest the first time.
+	 * (Hold recycleBinLock while using it).
+	 * @return
+	 */
+	private LinkedHashMap<String, Page> getRecycleBinMap(){
+		synchronized (recycleBinLock){
+			if(recycleBin==null){
+				recycleBin = new LinkedHashMap<>();
+				for(PageManifest.Entry entry : manifest.getEntries()){
+					if(entry.inRecycleBin){
+						recycleBin.put(entry.id, fromManifest(entry, PAGES_RECYCLE_BIN));
+					}
+				}
+			}
+			return recycleBin;
+		}
 	}
 
 	/**
@@ -425,10 +902,17 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 			new File(PAGES_RECYCLE_BIN).mkdirs();
 		}
 
+		LinkedHashMap<String, Page> loaded = new LinkedHashMap<>();
+
 		for(File file : recycleBinDir.listFiles()){
 			Article page = new Article(file.getPath());
-			recycleBin.add(page);
+			loaded.put(page.getName(), page);
 			page.addListener(this);
+			updateManifest(page);
+		}
+
+		synchronized (recycleBinLock){
+			recycleBin = loaded;
 		}
 	}
 
@@ -444,12 +928,79 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 	}
 
 
+	/**
+	 * Download a webpage, unless it was already saved,
+	 * ahead of the crawls (the user is waiting for it).
+	 * @param address
+	 */
 	public void download(String address){
-		downloader.download(address);
+		download(address, DownloadExecutor.Priority.INTERACTIVE);
+	}
+
+	/**
+	 * Download a webpage, unless it was already saved.
+	 * @param address
+	 * @param priority
+	 */
+	public void download(String address, DownloadExecutor.Priority priority){
+		downloader.download(address, false, priority);
+	}
+
+	/**
+	 * Download a webpage again in the background, replacing the page that was saved from it (if any).
+	 * @param address
+	 */
+	public void refresh(String address){
+		downloader.download(address, true, DownloadExecutor.Priority.REFRESH);
+	}
+
+	/**
+	 * True if the webpage at a url was already saved.
+	 * @param url
+	 * @return
+	 */
+	@Override
+	public boolean isSaved(String url){
+		return urlIndex.contains(url);
 	}
 
+	/**
+	 * Crawl a website from its homepage, downloading the new articles it links to
+	 * (as bulk downloads).
+	 * @param homepage
+	 */
 	public void downloadAll(String homepage){
-		downloader.downloadAll(homepage);
+		downloadAll(homepage, null, DownloadExecutor.Priority.BULK);
+	}
+
+	/**
+	 * Crawl a website from its homepage, downloading the new articles it links to.
+	 * @param homepage
+	 * @param priority
+	 */
+	public void downloadAll(String homepage, DownloadExecutor.Priority priority){
+		downloadAll(homepage, null, priority);
+	}
+
+	/**
+	 * Crawl a website from its homepage, downloading the new articles it links to
+	 * whose paths contain a match of a regex (eg: "/20[0-9]{2}/" for dated articles).
+	 * @param homepage
+	 * @param pathPattern
+	 */
+	public void downloadAll(String homepage, String pathPattern){
+		downloadAll(homepage, pathPattern, DownloadExecutor.Priority.BULK);
+	}
+
+	/**
+	 * Crawl a website from its homepage, downloading the new articles it links to
+	 * whose paths contain a match of a regex (null for any).
+	 * @param homepage
+	 * @param pathPattern
+	 * @param priority
+	 */
+	public void downloadAll(String homepage, String pathPattern, DownloadExecutor.Priority priority){
+		downloader.downloadAll(homepage, pathPattern, priority);
 	}
 
 	public void pauseDownloads(){
@@ -460,6 +1011,22 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 		downloader.resumeAll();
 	}
 
+	/**
+	 * Get the urls waiting to be downloaded, in order.
+	 * @return
+	 */
+	public List<String> getDownloadQueue(){
+		return downloader.getQueue();
+	}
+
+	/**
+	 * Get how the downloads went for each host (successes, failures, retries, ...).
+	 * @return
+	 */
+	public List<String> getDownloadStats(){
+		return downloader.getHostStats();
+	}
+
 
 	/**
 	 * Called by a DownloadThread from the Downloader when a
@@ -467,31 +1034,52 @@ public class Notebook implements Pageable, PageListener, Downloader.WebUser {
 	 * @param data
 	 */
 	@Override
-	public void onDownloadReady(WebsiteData data) {
+	public boolean onDownloadReady(WebsiteData data) {
+
+		String id = newPageId();
+
+		//claim the url, unless another download got there first
+		//(or replace the page saved from it, when refreshing)
+		final String replacedId;
+		synchronized (urlIndex){
+			String savedId = urlIndex.get(data.url);
+			replacedId = savedId!=null? savedId : urlIndex.get(data.doc.location());
+			if(replacedId!=null && !data.refresh){
+				return false;
+			}
+			urlIndex.put(data.url, id);
+		}
 
-		synchronized (this){
+		new Thread() {
 
-			new Thread() {
+			public void run() {
 
-				public void run() {
+				Article page = new Article(PAGES_DIR+File.separator+id);
+				page.initContent(data);
+				page.create();
+				addPage(page);
+				indexingQueue.enqueueUpdate(page);
 
-					Article page = new Article(PAGES_DIR+File.separator+System.currentTimeMillis());
-					page.initContent(data);
-					page.create();
-					addPage(page);
+				try {
+					listener.onCreated(page);
+				}catch (NullPointerException e){
+					e.printStackTrace();
+				}
 
-					try {
-						listener.onCreated(page);
-					}catch (NullPointerException e){
-						e.printStackTrace();
-					}
+				//the images follow the text as they arrive
+				page.receiveImages();
 
+				//the old version goes to the recycle bin
+				Page replaced = replacedId==null? null : pages.get(replacedId);
+				if(replaced!=null){
+					replaced.delete();
 				}
 
-			}.start();
+			}
 
-		}
+		}.start();
 
+		return true;
 	}
 
 
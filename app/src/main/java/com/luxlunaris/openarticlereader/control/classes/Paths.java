@@ -27,6 +27,31 @@ public class Paths {
 
     public static String PAGES_RECYCLE_BIN = APP_DIR_PATH+File.separator+"pages_recycle_bin";
 
+    /**
+     * Stores the full-text search index of the pages.
+     */
+    public static String INDEX_DIR = APP_DIR_PATH+File.separator+"index";
+
+    /**
+     * Summarizes all of the pages, to list them quickly at startup.
+     */
+    public static String PAGES_MANIFEST_PATH = APP_DIR_PATH+File.separator+"pages_manifest";
+
+    /**
+     * Stores the images while they're downloaded.
+     */
+    public static String DOWNLOADS_STAGING_DIR = APP_DIR_PATH+File.separator+"downloads_staging";
+
+    /**
+     * Stores the downloaded webpages, to revalidate them rather than fetch them again.
+     */
+    public static String HTTP_CACHE_DIR = APP_DIR_PATH+File.separator+"http_cache";
+
+    /**
+     * Keeps the download queue, to resume it after a restart.
+     */
+    public static String DOWNLOAD_JOURNAL_PATH = APP_DIR_PATH+File.separator+"download_journal";
+
 
 
 
@@ -3,7 +3,7 @@ package com.luxlunaris.openarticlereader.control.classes;
 import com.luxlunaris.openarticlereader.control.interfaces.NotebookListener;
 import com.luxlunaris.openarticlereader.model.interfaces.Page;
 
-import java.util.ArrayList;
+import java.util.LinkedHashSet;
 
 /**
  * Listens to Notebook and keeps track of all of the changes
@@ -17,10 +17,12 @@ public class ProxyNotebookListener implements NotebookListener {
     /**
      * Buffers to keep track of all of the changes made to Pages
      * while concerned GUI is in the background, and needed upon restart.
+     * (Filled by Notebook from any thread, guarded by lock).
      */
-    static private ArrayList<Page> justDeletedList = new ArrayList<>();
-    static private ArrayList<Page> justCreatedList = new ArrayList<>();
-    static private ArrayList<Page> justModifiedList = new ArrayList<>();
+    static private LinkedHashSet<Page> justDeletedList = new LinkedHashSet<>();
+    static private LinkedHashSet<Page> justCreatedList = new LinkedHashSet<>();
+    static private LinkedHashSet<Page> justModifiedList = new LinkedHashSet<>();
+    static private final Object lock = new Object();
 
 
     /**
@@ -30,7 +32,9 @@ public class ProxyNotebookListener implements NotebookListener {
      */
     @Override
     public void onCreated(Page page) {
-        justCreatedList.add(page);
+        synchronized (lock){
+            justCreatedList.add(page);
+        }
     }
 
     /**
@@ -41,9 +45,11 @@ public class ProxyNotebookListener implements NotebookListener {
      */
     @Override
     public void onDeleted(Page page) {
-        justDeletedList.add(page);
-        justCreatedList.remove(page);
-        justModifiedList.remove(page);
+        synchronized (lock){
+            justDeletedList.add(page);
+            justCreatedList.remove(page);
+            justModifiedList.remove(page);
+        }
     }
 
     /**
@@ -56,8 +62,10 @@ public class ProxyNotebookListener implements NotebookListener {
 
         //add a page to the list of modified items,
         //except if it was just created.
-        if(!justCreatedList.contains(page)   && !justModifiedList.contains(page)){
-            justModifiedList.add(page);
+        synchronized (lock){
+            if(!justCreatedList.contains(page)   && !justModifiedList.contains(page)){
+                justModifiedList.add(page);
+            }
         }
 
     }
@@ -68,9 +76,11 @@ public class ProxyNotebookListener implements NotebookListener {
      * @return
      */
     public Page[] popJustDeleted(){
-        Page[] result = justDeletedList.toArray(new Page[0]);
-        justDeletedList.clear();
-        return result;
+        synchronized (lock){
+            Page[] result = justDeletedList.toArray(new Page[0]);
+            justDeletedList.clear();
+            return result;
+        }
     }
 
     /**
@@ -78,9 +88,11 @@ public class ProxyNotebookListener implements NotebookListener {
      * @return
      */
     public Page[] popJustModified(){
-        Page[] result = justModifiedList.toArray(new Page[0]);
-        justModifiedList.clear();
-        return result;
+        synchronized (lock){
+            Page[] result = justModifiedList.toArray(new Page[0]);
+            justModifiedList.clear();
+            return result;
+        }
     }
 
     /**
@@ -88,9 +100,11 @@ public class ProxyNotebookListener implements NotebookListener {
      * @return
      */
     public Page[] popJustCreated(){
-        Page[] result = justCreatedList.toArray(new Page[0]);
-        justCreatedList.clear();
-        return result;
+        synchronized (lock){
+            Page[] result = justCreatedList.toArray(new Page[0]);
+            justCreatedList.clear();
+            return result;
+        }
     }
 
 
@@ -12,7 +12,25 @@ public enum SETTINGS_TAGS {
 
     LAUNCH_TO_BLANK_PAGE(TAG_TYPES.BOOLEAN, false),
 
-    THEME(TAG_TYPES.STRING, "LIGHT");
+    THEME(TAG_TYPES.STRING, "LIGHT"),
+
+    MAX_CONCURRENT_DOWNLOADS(TAG_TYPES.INT, 6),
+
+    MAX_DOWNLOADS_PER_HOST(TAG_TYPES.INT, 2),
+
+    MAX_IMAGE_SIZE_KB(TAG_TYPES.INT, 10*1024),
+
+    IMAGE_DOWNLOAD_BUDGET_KB(TAG_TYPES.INT, 16*1024),
+
+    HTTP_CACHE_SIZE_KB(TAG_TYPES.INT, 20*1024),
+
+    CRAWL_MAX_DEPTH(TAG_TYPES.INT, 1),
+
+    CRAWL_POLITENESS_DELAY_MS(TAG_TYPES.INT, 1000),
+
+    HTTP_CONNECT_TIMEOUT_MS(TAG_TYPES.INT, 15*1000),
+
+    HTTP_READ_TIMEOUT_MS(TAG_TYPES.INT, 30*1000);
 
 
 
@@ -3,12 +3,38 @@ import com.luxlunaris.openarticlereader.model.interfaces.Page;
 
 
 /**
- * Defines a "buffer/iterator" behavior: the implementation will have to
- * keep count of the returned pages, and, if called multiple times,
- * return the remaining (if any).
+ * Defines a "buffer/iterator" behavior: each consumer gets its own Cursor,
+ * that keeps track of the pages it already returned, and, if called
+ * multiple times, returns the remaining (if any).
  */
 public interface Pageable {
-	
-	public Page[] getNext(int amount);
+
+	/**
+	 * Get a new Cursor, placed before the first page.
+	 * @return
+	 */
+	public Cursor newCursor();
+
+	/**
+	 * Get the next batch of pages after a Cursor, and move the Cursor past them.
+	 * @param cursor
+	 * @param amount
+	 * @return
+	 */
+	public Page[] getNext(Cursor cursor, int amount);
+
+	/**
+	 * Forget a Cursor that's not needed anymore.
+	 * @param cursor
+	 */
+	public void discard(Cursor cursor);
+
+	/**
+	 * A position among the pages, independent of every other Cursor's.
+	 * (Opaque: only the Pageable that made it knows what's inside).
+	 */
+	public interface Cursor {
+
+	}
 
 }
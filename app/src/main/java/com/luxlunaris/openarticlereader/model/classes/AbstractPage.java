@@ -1,16 +1,21 @@
 package com.luxlunaris.openarticlereader.model.classes;
 
-import android.text.Html;
-import android.util.Log;
-
 import com.luxlunaris.openarticlereader.control.interfaces.PageListener;
 import com.luxlunaris.openarticlereader.model.exceptions.WrongTagTypeException;
 import com.luxlunaris.openarticlereader.model.interfaces.Metadata;
 import com.luxlunaris.openarticlereader.model.interfaces.Page;
+import com.luxlunaris.openarticlereader.model.services.DebugLog;
 import com.luxlunaris.openarticlereader.model.services.FileIO;
+import com.luxlunaris.openarticlereader.model.services.HtmlToText;
+import com.luxlunaris.openarticlereader.model.services.IntList;
+import com.luxlunaris.openarticlereader.model.services.KeywordMatcher;
+import com.luxlunaris.openarticlereader.model.services.TokenFinder;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 
 public abstract class AbstractPage extends File implements Page {
@@ -25,6 +30,12 @@ public abstract class AbstractPage extends File implements Page {
      */
     protected File textFile;
 
+    /**
+     * Caches the text of this Page without html tags,
+     * preceded by a stamp of the text file it was derived from.
+     */
+    protected File plainTextFile;
+
     /**
      * Directory that contains this Page's images.
      */
@@ -43,15 +54,36 @@ public abstract class AbstractPage extends File implements Page {
     /**
      * Data relative to the currently searched-for token.
      */
-    Integer[] positionsOfToken;
+    IntList positionsOfToken = new IntList();
     String currentToken;
     int posIndex = 0;
 
+    /**
+     * State of the current batch of changes (see beginEdit()):
+     * how many batches are open, the html source waiting to be written,
+     * and whether anything got modified.
+     */
+    transient int editDepth = 0;
+    transient String pendingSource;
+    transient boolean modifiedInEdit = false;
+
+    /**
+     * A preview known in advance (eg: from the page manifest),
+     * valid as long as the text file's last-modified time is previewTime.
+     */
+    transient String knownPreview;
+    transient long previewTime;
+
     /**
      * The tag that states whether this Page is editable or not.
      */
     public final String TAG_EDITABLE = "EDITABLE";
 
+    /**
+     * Version of the plain text cache's format.
+     */
+    private static final int PLAIN_TEXT_VERSION = 2;
+
 
 
     //page tags
@@ -62,8 +94,9 @@ public abstract class AbstractPage extends File implements Page {
 
     public AbstractPage(String pathname) {
         super(pathname);
-        metadata = new MetadataFile(getPath()+File.separator+"metadata");
+        metadata = MetadataCatalog.metadataOf(getPath());
         textFile = new File(getPath()+File.separator+"text");
+        plainTextFile = new File(getPath()+File.separator+"text.plain");
         imageDir = new File(getPath()+File.separator+"images");
         listeners = new ArrayList<>();
     }
@@ -74,7 +107,7 @@ public abstract class AbstractPage extends File implements Page {
      */
     @Override
     public void addListener(PageListener listener) {
-        Log.d("PAGE_GETS_LISTENER", listener+" started listening to: "+ this);
+        DebugLog.d("PAGE_GETS_LISTENER", listener+" started listening to: "+ this);
         listeners.add(listener);
     }
 
@@ -106,6 +139,7 @@ public abstract class AbstractPage extends File implements Page {
      */
     public void setEditable(boolean editable){
         metadata.setTagValue(TAG_EDITABLE, editable+"");
+        noteTagChange();
     }
 
     /**
@@ -133,10 +167,102 @@ public abstract class AbstractPage extends File implements Page {
      */
     @Override
     public String getSource() {
+
+        //a batch may have an unwritten html source
+        if(pendingSource!=null){
+            return pendingSource;
+        }
+
         String text = FileIO.read(textFile.getPath());
         return text ==null? "" : text;
     }
 
+    /**
+     * Write a new html source to the text file
+     * (or just hold on to it, if in a batch of changes).
+     * @param text
+     */
+    protected synchronized void writeSource(String text){
+
+        if(editDepth>0){
+            pendingSource = text;
+            return;
+        }
+
+        FileIO.write(textFile.getPath(), text);
+        invalidateText();
+    }
+
+    /**
+     * Tell the listeners that this Page got modified
+     * (only once at the end, if in a batch of changes).
+     */
+    protected void notifyModified(){
+
+        if(editDepth>0){
+            modifiedInEdit = true;
+            return;
+        }
+
+        for(PageListener listener : listeners){
+            listener.onModified(this);
+        }
+    }
+
+    /**
+     * Remember that tags changed (if in a batch of changes).
+     */
+    private void noteTagChange(){
+        if(editDepth>0){
+            modifiedInEdit = true;
+        }
+    }
+
+    /**
+     * Start a batch of changes.
+     */
+    @Override
+    public synchronized void beginEdit(){
+        editDepth++;
+    }
+
+    /**
+     * Commit a batch of changes: the text file and the metadata
+     * get written once, and the listeners get notified once.
+     */
+    @Override
+    public void commitEdit(){
+
+        boolean modified;
+
+        synchronized (this){
+
+            if(editDepth==0){
+                throw new IllegalStateException("commitEdit() without beginEdit()");
+            }
+
+            //nested batches get committed by the outermost one
+            if(--editDepth>0){
+                return;
+            }
+
+            modified = pendingSource!=null || modifiedInEdit;
+
+            if(pendingSource!=null){
+                FileIO.write(textFile.getPath(), pendingSource);
+                invalidateText();
+                pendingSource = null;
+            }
+
+            metadata.flush();
+            modifiedInEdit = false;
+        }
+
+        if(modified){
+            notifyModified();
+        }
+    }
+
 
 
     /**
@@ -153,6 +279,9 @@ public abstract class AbstractPage extends File implements Page {
 
         FileIO.deleteDirectory(this.getPath());
 
+        //forget the tags of this page (and of its sub-pages)
+        metadata.discard();
+
         //return del;
         return true;
     }
@@ -167,14 +296,14 @@ public abstract class AbstractPage extends File implements Page {
         mkdir();
 
         try {
-            ((MetadataFile)metadata).createNewFile();
+            metadata.create();
             textFile.createNewFile();
             imageDir.mkdir();
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        Log.d("CREATED_PAGE", "CREATED PAGE: "+getName()+" "+textFile.exists()+" "+imageDir.exists());
+        DebugLog.d("CREATED_PAGE", "CREATED PAGE: "+getName()+" "+textFile.exists()+" "+imageDir.exists());
 
         //notify the listeners that this got created
         for(PageListener listener : listeners){
@@ -186,10 +315,77 @@ public abstract class AbstractPage extends File implements Page {
 
     /**
      * Get the text of this Page without any html tags.
+     * (Read from the plain text cache, unless it's stale).
      * @return
      */
-    protected String getText(){
-        return Html.fromHtml(getSource()).toString();
+    @Override
+    public String getText(){
+
+        //the unwritten source of a batch isn't cached
+        String pending = pendingSource;
+        if(pending!=null){
+            return HtmlToText.convert(pending);
+        }
+
+        //identifies the current version of the html source
+        String stamp = getTextStamp();
+
+        //the cache's first line is the stamp of the source it was derived from
+        if(plainTextFile.exists()){
+            String cached = FileIO.readExact(plainTextFile.getPath());
+            int endOfStamp = cached==null? -1 : cached.indexOf('\n');
+            if(endOfStamp>=0 && cached.substring(0, endOfStamp).equals(stamp)){
+                return cached.substring(endOfStamp+1);
+            }
+        }
+
+        //stale or missing: render the html source again and cache it
+        String text = HtmlToText.convert(getSource());
+        cacheText(stamp, text);
+        return text;
+    }
+
+    /**
+     * Write the plain text cache: to a temporary file first, that then replaces
+     * the cache, so that a reader (or a crash) never sees a half-written text
+     * behind a valid stamp.
+     * @param stamp
+     * @param text
+     */
+    private void cacheText(String stamp, String text){
+
+        //(one per thread, as they may render the same page at once)
+        File tmp = new File(plainTextFile.getPath()+"."+Thread.currentThread().getId()+".tmp");
+
+        try(Writer writer = new BufferedWriter(new FileWriter(tmp))){
+            writer.write(stamp);
+            writer.write('\n');
+            writer.write(text);
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return;
+        }
+
+        if(!tmp.renameTo(plainTextFile)){
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Get a stamp that changes whenever the text file does,
+     * (even if edited by someone else).
+     * @return
+     */
+    private String getTextStamp(){
+        return PLAIN_TEXT_VERSION+" "+textFile.lastModified()+" "+textFile.length();
+    }
+
+    /**
+     * Discard the plain text cache, after the html source changed.
+     */
+    protected void invalidateText(){
+        plainTextFile.delete();
     }
 
     /**
@@ -199,7 +395,7 @@ public abstract class AbstractPage extends File implements Page {
      */
     @Override
     public int numOfTokens(String token) {
-        return getText().toUpperCase().split(token.toUpperCase()).length-1;
+        return new TokenFinder(token).count(getText());
     }
 
     /**
@@ -226,45 +422,13 @@ public abstract class AbstractPage extends File implements Page {
      */
     @Override
     public void setTokenToBeFound(String token){
-        positionsOfToken = getTokensPositions(token);
+        positionsOfToken.clear();
+        new TokenFinder(token).findAll(getText(), positionsOfToken);
         currentToken = token;
         posIndex = 0;
     }
 
 
-    /**
-     * Find all of the positions of a token in this Page
-     * @param token
-     * @return
-     */
-    private Integer[] getTokensPositions(String token) {
-
-        //initialize list of positions
-        ArrayList<Integer> positions = new ArrayList<Integer>();
-
-        //convert token and text to upper case
-        token = token.toUpperCase();
-
-        //get the text (w/out tags, as displayed on screen) and convert it to upper case
-        String text = getText().toUpperCase();
-
-        //split the text by the token
-        String[] parts = text.split(token);
-
-        //first position
-        positions.add(parts[0].length());
-
-        //get the other positions
-        for(int i =1; i<parts.length-1; i++){
-            int lastPos = positions.get(positions.size()-1);
-            int nextPos = lastPos+ token.length() +parts[i].length();
-            positions.add(nextPos);
-        }
-
-        return positions.toArray(new Integer[0]);
-    }
-
-
     /**
      *  Get the next position of the currently sought-after token
      * @return
@@ -273,17 +437,17 @@ public abstract class AbstractPage extends File implements Page {
     public int nextPosition() {
 
         //if no token, or no positions, return index = 0
-        if(currentToken ==null || positionsOfToken.length==0){
+        if(currentToken ==null || positionsOfToken.size()==0){
             return 0;
         }
 
 
-        if(posIndex+1 > positionsOfToken.length-1){
-            return positionsOfToken[posIndex];
+        if(posIndex+1 > positionsOfToken.size()-1){
+            return positionsOfToken.get(posIndex);
         }
 
         //return the due position, THEN increment the index
-        return positionsOfToken[posIndex++];
+        return positionsOfToken.get(posIndex++);
     }
 
     /**
@@ -295,16 +459,16 @@ public abstract class AbstractPage extends File implements Page {
     public int previousPosition() {
 
         //if no token, or no positions, return index = 0
-        if(currentToken ==null || positionsOfToken.length==0){
+        if(currentToken ==null || positionsOfToken.size()==0){
             return 0;
         }
 
         if(posIndex-1 < 0){
-            return positionsOfToken[posIndex];
+            return positionsOfToken.get(posIndex);
         }
 
         //return the due position, THEN increment the index
-        return positionsOfToken[posIndex--];
+        return positionsOfToken.get(posIndex--);
     }
 
     /**
@@ -333,9 +497,25 @@ public abstract class AbstractPage extends File implements Page {
      */
     @Override
     public String getPreview() {
+
+        if(knownPreview!=null && textFile.lastModified()==previewTime){
+            return knownPreview+"\n";
+        }
+
         return FileIO.readLine(textFile.getPath())+"\n";
     }
 
+    /**
+     * Let this Page know its preview in advance, so it doesn't need to read it,
+     * for as long as its text file was last modified at a given time.
+     * @param preview
+     * @param lastModified
+     */
+    public void setKnownPreview(String preview, long lastModified){
+        knownPreview = preview;
+        previewTime = lastModified;
+    }
+
 
     /**
      * Checks if this page contains ALL of the provided keywords
@@ -344,14 +524,17 @@ public abstract class AbstractPage extends File implements Page {
      * @return
      */
     public boolean contains(String[] keywords){
+        return contains(new KeywordMatcher(keywords));
+    }
 
-        String text =  getText().toUpperCase();
-        for(String keyword : keywords){
-            if(!text.contains(keyword.toUpperCase())){
-                return false;
-            }
-        }
-        return true;
+    /**
+     * Checks if this page contains ALL of the keywords of a matcher.
+     * @param matcher
+     * @return
+     */
+    @Override
+    public boolean contains(KeywordMatcher matcher){
+        return matcher.matchesAll(getText());
     }
 
 
@@ -371,6 +554,19 @@ public abstract class AbstractPage extends File implements Page {
         metadata.setTagValue("IN_RECYCLE_BIN", inRecycleBin+"");
     }
 
+    /**
+     * Get a new (not yet existing) file in this Page's imageDir.
+     * @return
+     */
+    protected synchronized File newImageFile(){
+        long name = System.currentTimeMillis();
+        File imageFile = new File(imageDir.getPath()+File.separator+name);
+        while(imageFile.exists()){
+            imageFile = new File(imageDir.getPath()+File.separator+(++name));
+        }
+        return imageFile;
+    }
+
     /**
      * Generate an image "tag" given its path.
      * @param path
@@ -389,6 +585,7 @@ public abstract class AbstractPage extends File implements Page {
     @Override
     public void setTag(String tag, String value) {
         metadata.setTagValue(tag, value);
+        noteTagChange();
     }
 
     @Override
@@ -0,0 +1,62 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+/**
+ * A fixed amount of bytes shared by the transfers in flight.
+ *
+ * A transfer reserves the bytes it expects to receive before it starts,
+ * and gives them back when it's over; if there aren't enough left, it waits.
+ * A reservation is all-or-nothing, so transfers can't hold part of the budget
+ * while waiting for the rest (and block each other).
+ */
+public class ByteBudget {
+
+    private long capacity;
+    private long available;
+
+    public ByteBudget(long capacity){
+        this.capacity = Math.max(1, capacity);
+        this.available = this.capacity;
+    }
+
+    /**
+     * Change the total amount of bytes (at least 1).
+     * @param capacity
+     */
+    public synchronized void setCapacity(long capacity){
+        capacity = Math.max(1, capacity);
+        available += capacity-this.capacity;
+        this.capacity = capacity;
+        notifyAll();
+    }
+
+    /**
+     * Wait for an amount of bytes to be available, and take them.
+     * (An amount larger than the whole budget waits for all of it).
+     * @param bytes
+     * @return the amount actually reserved, to be given back with release().
+     * @throws InterruptedException
+     */
+    public synchronized long acquire(long bytes) throws InterruptedException {
+        bytes = Math.min(bytes, capacity);
+        while(available<bytes){
+            wait();
+        }
+        available -= bytes;
+        return bytes;
+    }
+
+    /**
+     * Give back the bytes reserved by acquire().
+     * @param bytes
+     */
+    public synchronized void release(long bytes){
+        available += bytes;
+        notifyAll();
+    }
+
+    public synchronized long getAvailable(){
+        return available;
+    }
+
+
+}
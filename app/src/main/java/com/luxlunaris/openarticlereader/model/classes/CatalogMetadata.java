@@ -0,0 +1,100 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.luxlunaris.openarticlereader.model.exceptions.WrongTagTypeException;
+import com.luxlunaris.openarticlereader.model.interfaces.Metadata;
+
+import java.io.Serializable;
+
+/**
+ * The tags of a Page, as stored in a MetadataCatalog.
+ *
+ * It only holds the page's id and the catalog's root directory,
+ * so it survives being serialized along with its Page.
+ */
+public class CatalogMetadata implements Metadata, Serializable {
+
+    /**
+     * The root directory of the catalog.
+     */
+    private final String rootPath;
+
+    /**
+     * The id of the page in the catalog.
+     */
+    private final String pageId;
+
+    /**
+     * The catalog (re-opened after deserialization).
+     */
+    private transient MetadataCatalog catalog;
+
+
+    CatalogMetadata(String rootPath, String pageId) {
+        this.rootPath = rootPath;
+        this.pageId = pageId;
+    }
+
+    private MetadataCatalog getCatalog(){
+        if(catalog==null){
+            catalog = MetadataCatalog.open(rootPath);
+        }
+        return catalog;
+    }
+
+    @Override
+    public String getString(String tagName) {
+        return getCatalog().get(pageId, tagName);
+    }
+
+    @Override
+    public int getInt(String tagName) throws WrongTagTypeException {
+        return MetadataFile.toInt(tagName, getString(tagName));
+    }
+
+    @Override
+    public boolean getBoolean(String tagName) throws WrongTagTypeException {
+        return MetadataFile.toBoolean(tagName, getString(tagName));
+    }
+
+    @Override
+    public double getFloat(String tagName) throws WrongTagTypeException {
+        return MetadataFile.toFloat(tagName, getString(tagName));
+    }
+
+    @Override
+    public long getLong(String tagName) throws WrongTagTypeException {
+        return MetadataFile.toLong(tagName, getString(tagName));
+    }
+
+    @Override
+    public void setTagValue(String tagName, String tagValue) {
+        getCatalog().set(pageId, tagName, tagValue);
+    }
+
+    @Override
+    public void removeTag(String tagName) {
+        getCatalog().remove(pageId, tagName);
+    }
+
+    @Override
+    public String[] getTagNames() {
+        return getCatalog().getTagNames(pageId);
+    }
+
+    @Override
+    public void flush() {
+        getCatalog().flush();
+    }
+
+    @Override
+    public void create() {
+        getCatalog().reset(pageId);
+    }
+
+    @Override
+    public void discard() {
+        getCatalog().drop(pageId);
+    }
+
+
+}
@@ -1,5 +1,6 @@
 package com.luxlunaris.openarticlereader.model.classes;
 
+import com.luxlunaris.openarticlereader.model.interfaces.Metadata;
 import com.luxlunaris.openarticlereader.model.interfaces.Page;
 import com.luxlunaris.openarticlereader.model.services.FileIO;
 
@@ -50,6 +51,12 @@ public class Copier {
         FileIO.write(page.textFile.getPath(), source);
 
         FileIO.copyDirectory(((Article) original).notesPage.getPath(), page.notesPage.getPath());
+
+        //the notes' tags aren't stored in the notes' directory
+        Metadata originalNotes = ((Article) original).notesPage.metadata;
+        for(String tagName : originalNotes.getTagNames()){
+            page.notesPage.metadata.setTagValue(tagName, originalNotes.getString(tagName));
+        }
     }
 
 
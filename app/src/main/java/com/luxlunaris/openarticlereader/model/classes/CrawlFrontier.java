@@ -0,0 +1,181 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.luxlunaris.openarticlereader.model.services.UrlNormalizer;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which of the links found by a crawl (see Downloader.downloadAll())
+ * are worth downloading: each (normalized) url only once, only on the crawl's site,
+ * only up to a max depth, and only if it looks like an article.
+ *
+ * A link looks like an article if it's an http(s) url that isn't the homepage,
+ * a file (image, stylesheet, ...) or a navigation page (tags, categories, login, ...),
+ * and that matches the crawl's path pattern (if any).
+ *
+ * It's safe to use from several threads.
+ */
+public class CrawlFrontier {
+
+    /**
+     * Path segments of pages that list or frame the articles, rather than being one.
+     */
+    private static final HashSet<String> NAVIGATION_SEGMENTS = new HashSet<>(Arrays.asList(
+            "tag", "tags", "category", "categories", "topic", "topics", "author", "authors",
+            "page", "search", "login", "signin", "signup", "register", "account", "subscribe",
+            "newsletter", "about", "contact", "privacy", "terms", "cookies", "feed", "rss",
+            "archive", "archives", "cdn-cgi", "wp-admin", "wp-login.php"));
+
+    /**
+     * Extensions of files that aren't webpages.
+     */
+    private static final HashSet<String> FILE_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jpg", "jpeg", "png", "gif", "webp", "svg", "ico", "bmp",
+            "css", "js", "json", "xml", "rss", "atom",
+            "pdf", "zip", "gz", "rar", "7z", "apk", "exe", "dmg",
+            "mp3", "mp4", "m4a", "ogg", "webm", "avi", "mov", "woff", "woff2", "ttf"));
+
+    /**
+     * The host of the homepage (normalized), links must be on it or on its subdomains.
+     */
+    private final String site;
+
+    /**
+     * The normalized homepage.
+     */
+    private final String homepage;
+
+    /**
+     * The links found deeper than this are ignored (the homepage's links are at depth 1).
+     */
+    private final int maxDepth;
+
+    /**
+     * The paths of the articles must contain a match of it (null for any path).
+     */
+    private final Pattern pathPattern;
+
+    /**
+     * The (normalized) urls already found.
+     */
+    private final HashSet<String> seen;
+
+
+    /**
+     * @param homepage where the crawl starts.
+     * @param maxDepth how many links away from the homepage the crawl can go (at least 1).
+     * @param pathPattern a regex the paths of the articles must contain a match of (null for any).
+     */
+    public CrawlFrontier(String homepage, int maxDepth, String pathPattern){
+        this.homepage = UrlNormalizer.normalize(homepage);
+        this.site = hostOf(this.homepage);
+        this.maxDepth = Math.max(1, maxDepth);
+        this.pathPattern = pathPattern==null || pathPattern.isEmpty()? null : Pattern.compile(pathPattern);
+        this.seen = new HashSet<>();
+        seen.add(this.homepage);
+    }
+
+    /**
+     * Decide whether a link should be downloaded (and remember it, if so).
+     * @param url the (absolute) url of the link.
+     * @param depth how many links away from the homepage it is.
+     * @return true if it's a new article candidate.
+     */
+    public boolean offer(String url, int depth){
+
+        if(depth>maxDepth || url==null || url.isEmpty()){
+            return false;
+        }
+
+        String normal = UrlNormalizer.normalize(url);
+
+        URI uri;
+        try {
+            uri = new URI(normal);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+
+        //mailto:, javascript:, tel:, ...
+        String scheme = uri.getScheme();
+        if(scheme==null || !(scheme.equals("http") || scheme.equals("https"))){
+            return false;
+        }
+
+        if(!isOnSite(uri.getHost()) || !looksLikeArticle(uri.getPath())){
+            return false;
+        }
+
+        synchronized (this){
+            return seen.add(normal);
+        }
+    }
+
+    /**
+     * Remember a url as already found (eg: when resuming a crawl).
+     * @param url
+     */
+    public synchronized void markSeen(String url){
+        seen.add(UrlNormalizer.normalize(url));
+    }
+
+    /**
+     * True if the links found at a depth (of a page found at depth-1) can still be followed.
+     * @param depth
+     * @return
+     */
+    public boolean canGoDeeper(int depth){
+        return depth<maxDepth;
+    }
+
+    /**
+     * True if a host is the site's, or one of its subdomains.
+     * @param host
+     * @return
+     */
+    private boolean isOnSite(String host){
+        return host!=null && (host.equals(site) || host.endsWith("."+site));
+    }
+
+    /**
+     * True if a path could be an article's.
+     * @param path
+     * @return
+     */
+    private boolean looksLikeArticle(String path){
+
+        if(path==null || path.equals("/") || path.isEmpty()){
+            return false;
+        }
+
+        for(String segment : path.split("/")){
+            if(NAVIGATION_SEGMENTS.contains(segment.toLowerCase(Locale.ROOT))){
+                return false;
+            }
+        }
+
+        String last = path.substring(path.lastIndexOf('/')+1);
+        int dot = last.lastIndexOf('.');
+        if(dot!=-1 && FILE_EXTENSIONS.contains(last.substring(dot+1).toLowerCase(Locale.ROOT))){
+            return false;
+        }
+
+        return pathPattern==null || pathPattern.matcher(path).find();
+    }
+
+    private static String hostOf(String url){
+        try {
+            String host = new URI(url).getHost();
+            return host==null? "" : host;
+        } catch (URISyntaxException e) {
+            return "";
+        }
+    }
+
+
+}
@@ -0,0 +1,488 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs download tasks on a bounded number of threads.
+ *
+ * At most maxConcurrent tasks run at once, and at most maxPerHost of them
+ * talk to the same host (one more if it's an interactive task). The others wait in a queue (that can be inspected),
+ * in the order they were submitted; a task whose host is busy lets
+ * the tasks behind it (for other hosts) go first.
+ *
+ * Pausing stops new tasks from starting, the running ones get to finish.
+ *
+ * Follow-up tasks (eg: the images of an article being downloaded) can be queued
+ * ahead of the others, so that work already under way gets done first.
+ *
+ * Polite tasks (eg: the pages found by a crawl) don't start less than
+ * a politeness delay apart on the same host.
+ *
+ * Tasks can also be queued after a delay (eg: to retry them).
+ *
+ * Each task has a priority (see Priority): the queued tasks of a higher priority
+ * start first, and the lower priorities can't take up all of the threads, so that
+ * a download the user is waiting for doesn't queue behind a whole crawl
+ * (while the crawl keeps going on the other threads).
+ */
+public class DownloadExecutor {
+
+    /**
+     * The priorities of the tasks, from the highest.
+     */
+    public enum Priority {
+
+        /**
+         * Asked for by the user, who's waiting for it: it can use all of the threads,
+         * and one more connection to its host than the other tasks.
+         */
+        INTERACTIVE,
+
+        /**
+         * Part of a large batch (eg: a crawl): it leaves a thread free for the interactive tasks.
+         */
+        BULK,
+
+        /**
+         * Done in the background (eg: refreshing saved pages): it only starts
+         * when there's no other work waiting, and uses at most half of the threads.
+         */
+        REFRESH
+    }
+
+    /**
+     * The tasks waiting to start, for each priority: the follow-ups first, then the others.
+     */
+    private final EnumMap<Priority, LinkedList<Task>> followUps;
+    private final EnumMap<Priority, LinkedList<Task>> queue;
+
+    /**
+     * The tasks that are running.
+     */
+    private final ArrayList<Task> running;
+
+    /**
+     * How many tasks are running for each host.
+     */
+    private final HashMap<String, Integer> runningPerHost;
+
+    /**
+     * How many tasks are running for each priority.
+     */
+    private final EnumMap<Priority, Integer> runningPerPriority;
+
+    /**
+     * Runs the tasks (it never gets more than maxConcurrent at once).
+     */
+    private final ExecutorService threads;
+
+    /**
+     * When the last polite task started on each host.
+     */
+    private final HashMap<String, Long> lastPoliteStart;
+
+    /**
+     * Wakes the queue up when a polite task is allowed to start.
+     */
+    private ScheduledExecutorService timer;
+
+    /**
+     * True if a wake-up is scheduled.
+     */
+    private boolean wakeUpScheduled = false;
+
+    private int maxConcurrent;
+    private int maxPerHost;
+
+    /**
+     * The min time (ms) between the starts of polite tasks on the same host.
+     */
+    private long politenessDelay = 0;
+
+    private boolean paused = false;
+
+
+    public DownloadExecutor(int maxConcurrent, int maxPerHost){
+        this.followUps = new EnumMap<>(Priority.class);
+        this.queue = new EnumMap<>(Priority.class);
+        this.runningPerPriority = new EnumMap<>(Priority.class);
+        for(Priority priority : Priority.values()){
+            followUps.put(priority, new LinkedList<Task>());
+            queue.put(priority, new LinkedList<Task>());
+            runningPerPriority.put(priority, 0);
+        }
+        this.running = new ArrayList<>();
+        this.runningPerHost = new HashMap<>();
+        this.lastPoliteStart = new HashMap<>();
+        setLimits(maxConcurrent, maxPerHost);
+
+        threads = Executors.newCachedThreadPool(new ThreadFactory() {
+            int count = 0;
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Download-"+(count++));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Change the concurrency limits (at least 1 each).
+     * @param maxConcurrent
+     * @param maxPerHost
+     */
+    public synchronized void setLimits(int maxConcurrent, int maxPerHost){
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxPerHost = Math.max(1, maxPerHost);
+        dispatch();
+    }
+
+    /**
+     * Change the min time between the starts of polite tasks on the same host.
+     * @param delay (ms)
+     */
+    public synchronized void setPolitenessDelay(long delay){
+        this.politenessDelay = Math.max(0, delay);
+        dispatch();
+    }
+
+    /**
+     * Queue a task, it starts as soon as the limits (and the tasks of higher priority) allow.
+     * @param task
+     */
+    public synchronized void submit(Task task){
+        queue.get(task.getPriority()).add(task);
+        dispatch();
+    }
+
+    /**
+     * Queue a task ahead of those of the same priority submitted normally.
+     * @param task
+     */
+    public synchronized void submitFollowUp(Task task){
+        followUps.get(task.getPriority()).add(task);
+        dispatch();
+    }
+
+    /**
+     * Queue a task after a while (eg: to retry it).
+     * @param task
+     * @param followUp true to queue it ahead of those of the same priority submitted normally.
+     * @param delay (ms)
+     */
+    public synchronized void submitLater(final Task task, final boolean followUp, long delay){
+        getTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if(followUp){
+                    submitFollowUp(task);
+                }else{
+                    submit(task);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop starting queued tasks.
+     */
+    public synchronized void pause(){
+        paused = true;
+    }
+
+    /**
+     * Start the queued tasks again.
+     */
+    public synchronized void resume(){
+        paused = false;
+        dispatch();
+    }
+
+    public synchronized boolean isPaused(){
+        return paused;
+    }
+
+    /**
+     * Get the tasks waiting to start, in order.
+     * @return
+     */
+    public synchronized List<Task> getQueued(){
+        List<Task> queued = new ArrayList<>();
+        for(Priority priority : Priority.values()){
+            queued.addAll(followUps.get(priority));
+            queued.addAll(queue.get(priority));
+        }
+        return queued;
+    }
+
+    /**
+     * Get the running tasks.
+     * @return
+     */
+    public synchronized List<Task> getRunning(){
+        return new ArrayList<>(running);
+    }
+
+    /**
+     * Start as many queued tasks as the limits allow.
+     */
+    private void dispatch(){
+
+        if(paused){
+            return;
+        }
+
+        long wait = Long.MAX_VALUE;
+        for(Priority priority : Priority.values()){
+
+            wait = Math.min(wait, dispatch(followUps.get(priority)));
+            wait = Math.min(wait, dispatch(queue.get(priority)));
+
+            //background work waits for the rest to be started
+            if(priority==Priority.BULK && hasWaiting(priority)){
+                break;
+            }
+        }
+
+        //some polite tasks are waiting for their turn
+        if(wait!=Long.MAX_VALUE){
+            scheduleWakeUp(wait);
+        }
+    }
+
+    /**
+     * Start as many tasks from a queue as the limits allow.
+     * @param queue
+     * @return how long until the first of the polite tasks left behind can start
+     * (Long.MAX_VALUE if none).
+     */
+    private long dispatch(LinkedList<Task> queue){
+
+        long now = System.currentTimeMillis();
+        long wait = Long.MAX_VALUE;
+
+        Iterator<Task> iterator = queue.iterator();
+        while(iterator.hasNext()){
+
+            Task task = iterator.next();
+
+            //(all of the tasks in a queue have the same priority)
+            if(!hasRoomFor(task.getPriority())){
+                break;
+            }
+
+            //this host is busy: let the next tasks go first
+            Integer perHost = runningPerHost.get(task.host);
+            if(perHost!=null && perHost>=perHostLimit(task.getPriority())){
+                continue;
+            }
+
+            //too soon for this host
+            if(task.isPolite()){
+                Long last = lastPoliteStart.get(task.host);
+                long untilAllowed = last==null? 0 : last+politenessDelay-now;
+                if(untilAllowed>0){
+                    wait = Math.min(wait, untilAllowed);
+                    continue;
+                }
+                lastPoliteStart.put(task.host, now);
+            }
+
+            iterator.remove();
+            start(task);
+        }
+
+        return wait;
+    }
+
+    /**
+     * True if a task of a priority can start, as far as the threads go.
+     * @param priority
+     * @return
+     */
+    private boolean hasRoomFor(Priority priority){
+        switch (priority){
+            case INTERACTIVE:
+                return running.size()<maxConcurrent;
+            case BULK:
+                return running.size()<Math.max(1, maxConcurrent-1);
+            default:
+                return running.size()<Math.max(1, maxConcurrent-1)
+                        && runningPerPriority.get(priority)<Math.max(1, maxConcurrent/2);
+        }
+    }
+
+    /**
+     * How many tasks can talk to the same host when a task of a priority starts.
+     * (An interactive task can go one above the limit, so that it doesn't
+     * wait for the tasks of a crawl of the same host to be over).
+     * @param priority
+     * @return
+     */
+    private int perHostLimit(Priority priority){
+        return priority==Priority.INTERACTIVE? maxPerHost+1 : maxPerHost;
+    }
+
+    /**
+     * True if tasks of a priority are waiting to start.
+     * @param priority
+     * @return
+     */
+    private boolean hasWaiting(Priority priority){
+        return !followUps.get(priority).isEmpty() || !queue.get(priority).isEmpty();
+    }
+
+    /**
+     * Dispatch again after a while.
+     * @param delay (ms)
+     */
+    private void scheduleWakeUp(long delay){
+
+        if(wakeUpScheduled){
+            return;
+        }
+        wakeUpScheduled = true;
+
+        getTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (DownloadExecutor.this){
+                    wakeUpScheduled = false;
+                    dispatch();
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the (daemon) thread that runs the delayed actions.
+     * @return
+     */
+    private ScheduledExecutorService getTimer(){
+        if(timer==null){
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Download-timer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return timer;
+    }
+
+    /**
+     * Start a task on a thread, and make room for the next ones once it's done.
+     * @param task
+     */
+    private void start(final Task task){
+
+        running.add(task);
+        Integer perHost = runningPerHost.get(task.host);
+        runningPerHost.put(task.host, perHost==null? 1 : perHost+1);
+        runningPerPriority.put(task.priority, runningPerPriority.get(task.priority)+1);
+
+        threads.execute(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    task.run();
+                }catch (RuntimeException e){
+                    e.printStackTrace();
+                }finally {
+                    finished(task);
+                }
+            }
+        });
+    }
+
+    /**
+     * Called when a task is done.
+     * @param task
+     */
+    private synchronized void finished(Task task){
+
+        running.remove(task);
+
+        int perHost = runningPerHost.get(task.host)-1;
+        if(perHost==0){
+            runningPerHost.remove(task.host);
+        }else{
+            runningPerHost.put(task.host, perHost);
+        }
+        runningPerPriority.put(task.priority, runningPerPriority.get(task.priority)-1);
+
+        dispatch();
+    }
+
+
+    /**
+     * A download of a url.
+     */
+    public static abstract class Task implements Runnable {
+
+        private final String url;
+        private final String host;
+        private final Priority priority;
+
+        public Task(String url, Priority priority){
+            this.url = url;
+            this.host = hostOf(url);
+            this.priority = priority;
+        }
+
+        public String getUrl(){
+            return url;
+        }
+
+        public String getHost(){
+            return host;
+        }
+
+        public Priority getPriority(){
+            return priority;
+        }
+
+        /**
+         * True if this task should respect the politeness delay of its host.
+         * @return
+         */
+        public boolean isPolite(){
+            return false;
+        }
+
+        /**
+         * Get the (lowercase) host of a url, or "" if it's malformed.
+         * @param url
+         * @return
+         */
+        static String hostOf(String url){
+            try {
+                return new URL(url).getHost().toLowerCase();
+            } catch (MalformedURLException e) {
+                return "";
+            }
+        }
+
+        @Override
+        public String toString(){
+            return url;
+        }
+    }
+
+
+}
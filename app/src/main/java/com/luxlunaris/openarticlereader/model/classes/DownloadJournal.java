@@ -0,0 +1,429 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Keeps the download queue on disk, so that it survives the app being killed.
+ *
+ * It's an append-only log of records (one per line, like MetadataCatalog's):
+ * - Q: a download got enqueued (with everything needed to run it again, including its priority);
+ * - S: a download started;
+ * - D: a download is done;
+ * - F: a download failed for good;
+ * - P/R: the downloads got paused/resumed.
+ *
+ * An incomplete last record (cut short by a crash) gets cut off before the log is read.
+ *
+ * Replaying the log gives the downloads that still have to be done
+ * (those enqueued or started, but neither done nor failed), in the order
+ * they were enqueued. The log gets rewritten with just those when
+ * the finished downloads make up most of it.
+ */
+public class DownloadJournal {
+
+    private static final char ENQUEUED = 'Q';
+    private static final char STARTED = 'S';
+    private static final char DONE = 'D';
+    private static final char FAILED = 'F';
+    private static final char PAUSED = 'P';
+    private static final char RESUMED = 'R';
+
+    /**
+     * Don't bother compacting smaller logs.
+     */
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private final File file;
+
+    /**
+     * The downloads still to be done, by id, in the order they were enqueued.
+     */
+    private final LinkedHashMap<Long, Entry> pending;
+
+    /**
+     * The crawls (by id) that some of the pending downloads belong to.
+     * (A crawl is done when its homepage is, but its frontier is still needed).
+     */
+    private final LinkedHashMap<Long, Entry> crawls;
+
+    private long lastId = 0;
+
+    /**
+     * The last id found in the log when it was read: the downloads
+     * enqueued after that are already queued by this run of the app.
+     */
+    private long lastReplayedId = 0;
+    private boolean paused = false;
+
+    /**
+     * How many records the log has.
+     */
+    private int records = 0;
+
+    private Writer writer;
+
+    /**
+     * False until the log is read.
+     */
+    private boolean loaded;
+
+
+    /**
+     * (The log gets read when first needed, see load()).
+     * @param path
+     */
+    public DownloadJournal(String path){
+        file = new File(path);
+        pending = new LinkedHashMap<>();
+        crawls = new LinkedHashMap<>();
+    }
+
+    /**
+     * Read (and compact) the log, if not done yet.
+     * The other methods do it first: calling it ahead of time (eg: in the background)
+     * spares the wait to the first of them.
+     */
+    public synchronized void load(){
+        if(loaded){
+            return;
+        }
+        loaded = true;
+        replay();
+        lastReplayedId = lastId;
+        compact();
+    }
+
+    /**
+     * Record a new download.
+     * @param type Entry.PAGE or Entry.CRAWL.
+     * @param url
+     * @param refresh
+     * @param depth how many links away from its crawl's homepage it is (0 if none).
+     * @param crawlId the id of the crawl that found it (0 if none).
+     * @param pathPattern the path pattern of a crawl (null if none).
+     * @param priority
+     * @return the new entry.
+     */
+    public synchronized Entry enqueued(char type, String url, boolean refresh, int depth, long crawlId, String pathPattern, DownloadExecutor.Priority priority){
+        load();
+        Entry entry = new Entry(++lastId, type, url, refresh, depth, crawlId, pathPattern, priority);
+        pending.put(entry.id, entry);
+        if(type==Entry.CRAWL){
+            crawls.put(entry.id, entry);
+        }
+        append(ENQUEUED, entry.id+"", type+"", url, refresh? "1" : "0", depth+"", crawlId+"", pathPattern==null? "" : pathPattern, priority.name());
+        return entry;
+    }
+
+    public synchronized void started(long id){
+        load();
+        if(pending.containsKey(id)){
+            append(STARTED, id+"");
+        }
+    }
+
+    public synchronized void done(long id){
+        load();
+        if(pending.remove(id)!=null){
+            append(DONE, id+"");
+            compactIfNeeded();
+        }
+    }
+
+    public synchronized void failed(long id){
+        load();
+        if(pending.remove(id)!=null){
+            append(FAILED, id+"");
+            compactIfNeeded();
+        }
+    }
+
+    public synchronized void setPaused(boolean paused){
+        load();
+        if(this.paused!=paused){
+            this.paused = paused;
+            append(paused? PAUSED : RESUMED);
+        }
+    }
+
+    /**
+     * True if the downloads were paused (when the app was last closed).
+     * @return
+     */
+    public synchronized boolean isPaused(){
+        load();
+        return paused;
+    }
+
+    /**
+     * Get the downloads still to be done that were enqueued before the
+     * app was last closed (ie: read from the log), in the order they were enqueued.
+     * @return
+     */
+    public synchronized List<Entry> getPending(){
+        load();
+        ArrayList<Entry> replayed = new ArrayList<>();
+        for(Entry entry : pending.values()){
+            if(entry.id<=lastReplayedId){
+                replayed.add(entry);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Get a crawl that still has pending downloads.
+     * @param id
+     * @return null if not found.
+     */
+    public synchronized Entry getCrawl(long id){
+        load();
+        return crawls.get(id);
+    }
+
+    /**
+     * Get the urls of all of the (pending) downloads of a crawl.
+     * @param crawlId
+     * @return
+     */
+    public synchronized List<String> getUrlsOfCrawl(long crawlId){
+        load();
+        ArrayList<String> urls = new ArrayList<>();
+        for(Entry entry : pending.values()){
+            if(entry.crawlId==crawlId){
+                urls.add(entry.url);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Read the log.
+     */
+    private void replay(){
+
+        if(!file.exists()){
+            return;
+        }
+
+        MetadataCatalog.truncateTornRecord(file);
+
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))){
+
+            String line;
+            while((line = reader.readLine())!=null){
+
+                if(line.isEmpty()){
+                    continue;
+                }
+                String[] fields = MetadataCatalog.split(line);
+                records++;
+                if(fields==null){
+                    //a corrupted record: skip it
+                    continue;
+                }
+
+                try{
+                    switch (line.charAt(0)){
+                        case ENQUEUED:
+                            //(a corrupted record)
+                            if(fields.length<8){
+                                break;
+                            }
+                            Entry entry = new Entry(Long.parseLong(fields[1]), fields[2].charAt(0), fields[3],
+                                    fields[4].equals("1"), Integer.parseInt(fields[5]), Long.parseLong(fields[6]),
+                                    fields[7].isEmpty()? null : fields[7], parsePriority(fields));
+                            pending.put(entry.id, entry);
+                            if(entry.type==Entry.CRAWL){
+                                crawls.put(entry.id, entry);
+                            }
+                            lastId = Math.max(lastId, entry.id);
+                            break;
+                        case DONE:
+                        case FAILED:
+                            pending.remove(Long.parseLong(fields[1]));
+                            break;
+                        case PAUSED:
+                            paused = true;
+                            break;
+                        case RESUMED:
+                            paused = false;
+                            break;
+                    }
+                }catch (NumberFormatException | IndexOutOfBoundsException e){
+                    //a corrupted record: skip it
+                }
+            }
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Get the priority of a Q record.
+     * (The records written before there were priorities don't have one:
+     * the crawls were bulk, and the single downloads interactive).
+     * @param fields
+     * @return
+     */
+    private static DownloadExecutor.Priority parsePriority(String[] fields){
+        if(fields.length>8){
+            try{
+                return DownloadExecutor.Priority.valueOf(fields[8]);
+            }catch (IllegalArgumentException e){
+                //(unknown: fall back on the default)
+            }
+        }
+        boolean crawled = fields[2].charAt(0)==Entry.CRAWL || !fields[6].equals("0");
+        return crawled? DownloadExecutor.Priority.BULK : DownloadExecutor.Priority.INTERACTIVE;
+    }
+
+    /**
+     * Compact the log if the finished downloads make up most of it.
+     */
+    private void compactIfNeeded(){
+        if(records>=MIN_COMPACTION_RECORDS && records>4*(pending.size()+crawls.size())){
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the log with just the pending downloads (and the crawls they belong to).
+     */
+    private synchronized void compact(){
+
+        //forget the crawls that have nothing left to do
+        HashSet<Long> activeCrawls = new HashSet<>();
+        for(Entry entry : pending.values()){
+            activeCrawls.add(entry.crawlId);
+            activeCrawls.add(entry.id);
+        }
+        crawls.keySet().retainAll(activeCrawls);
+
+        StringBuilder out = new StringBuilder();
+        records = 0;
+        if(paused){
+            MetadataCatalog.appendRecord(out, PAUSED);
+            records++;
+        }
+        for(Entry crawl : crawls.values()){
+            if(!pending.containsKey(crawl.id)){
+                appendEntry(out, crawl);
+                MetadataCatalog.appendRecord(out, DONE, crawl.id+"");
+                records += 2;
+            }
+        }
+        for(Entry entry : pending.values()){
+            appendEntry(out, entry);
+            records++;
+        }
+
+        closeWriter();
+
+        File tmp = new File(file.getPath()+".tmp");
+        try(Writer tmpWriter = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8")){
+            tmpWriter.write(out.toString());
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return;
+        }
+
+        if(!tmp.renameTo(file)){
+            tmp.delete();
+        }
+    }
+
+    private static void appendEntry(StringBuilder out, Entry entry){
+        MetadataCatalog.appendRecord(out, ENQUEUED, entry.id+"", entry.type+"", entry.url, entry.refresh? "1" : "0",
+                entry.depth+"", entry.crawlId+"", entry.pathPattern==null? "" : entry.pathPattern, entry.priority.name());
+    }
+
+    /**
+     * Append a record to the log (and hand it to the OS right away,
+     * so that it survives the app being killed).
+     * @param type
+     * @param fields
+     */
+    private void append(char type, String... fields){
+
+        StringBuilder record = new StringBuilder();
+        MetadataCatalog.appendRecord(record, type, fields);
+
+        try{
+            if(writer==null){
+                file.getParentFile().mkdirs();
+                writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+            }
+            writer.write(record.toString());
+            writer.flush();
+            records++;
+        }catch (IOException e){
+            e.printStackTrace();
+            closeWriter();
+        }
+    }
+
+    private void closeWriter(){
+        if(writer==null){
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        writer = null;
+    }
+
+
+    /**
+     * A download, as enqueued.
+     */
+    public static class Entry {
+
+        /**
+         * The download of a single webpage.
+         */
+        public static final char PAGE = 'p';
+
+        /**
+         * The crawl of a homepage.
+         */
+        public static final char CRAWL = 'c';
+
+        public final long id;
+        public final char type;
+        public final String url;
+        public final boolean refresh;
+        public final int depth;
+        public final long crawlId;
+        public final String pathPattern;
+        public final DownloadExecutor.Priority priority;
+
+        Entry(long id, char type, String url, boolean refresh, int depth, long crawlId, String pathPattern, DownloadExecutor.Priority priority){
+            this.id = id;
+            this.type = type;
+            this.url = url;
+            this.refresh = refresh;
+            this.depth = depth;
+            this.crawlId = crawlId;
+            this.pathPattern = pathPattern;
+            this.priority = priority;
+        }
+    }
+
+
+}
@@ -1,32 +1,258 @@
 package com.luxlunaris.openarticlereader.model.classes;
 
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
-import org.jsoup.helper.HttpConnection;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Downloads webpages (and their images) in the background,
+ * on a bounded number of threads (see DownloadExecutor).
+ *
+ * Bodies are never held in memory: they're streamed into files
+ * in a staging directory, through a fixed-size buffer (see ResumableTransfer),
+ * and the Pages then move the images into their own image directories.
+ *
+ * All of the requests go through a shared HttpClient (pooled keep-alive
+ * connections, compressed transfer, timeouts); Jsoup only parses what it fetched.
+ */
 public class Downloader {
 
+    /**
+     * How many images of the same article can be fetched at once.
+     */
+    private static final int MAX_PARALLEL_IMAGES = 4;
+
+    /**
+     * Larger webpages are dropped.
+     */
+    private static final long MAX_DOCUMENT_SIZE = 16*1024*1024;
+
+    /**
+     * The interrupted transfers older than this (ms) aren't resumed anymore.
+     */
+    private static final long MAX_PART_AGE = 24*60*60*1000;
+
+    /**
+     * The default failure policy (see FailurePolicy).
+     */
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long RETRY_BASE_DELAY = 2000;
+    private static final long RETRY_MAX_DELAY = 60*1000;
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_COOL_DOWN = 2*60*1000;
+
+    /**
+     * The default timeouts (ms) of the HTTP client.
+     */
+    private static final int CONNECT_TIMEOUT = 15*1000;
+    private static final int READ_TIMEOUT = 30*1000;
+
+    /**
+     * Where images are stored while they're downloaded.
+     */
+    private final File stagingDir;
+
+    /**
+     * Larger images are dropped.
+     */
+    private volatile long maxImageSize;
+
+    /**
+     * Bounds the bytes of all of the images being downloaded at once.
+     */
+    private final ByteBudget imageBudget;
+
+
+    /**
+     * Stores the webpages, to revalidate them rather than fetch them again (null if none).
+     */
+    private volatile HttpCache cache;
+
+    /**
+     * How many links away from the homepage a crawl can go.
+     */
+    private volatile int maxCrawlDepth = 1;
+
+    /**
+     * Keeps the queue on disk, to resume it after a restart (null if none).
+     */
+    private volatile DownloadJournal journal;
+
+    /**
+     * Decides what to do when a download fails.
+     */
+    private volatile FailurePolicy policy;
+
+    /**
+     * Fetches everything, over pooled keep-alive connections.
+     */
+    private final HttpClient client;
+
     private WebUser listener;
 
-    private ArrayList<Thread> activeThreads;
+    /**
+     * Runs the downloads, within the global and per-host limits.
+     */
+    private DownloadExecutor executor;
 
     public interface WebUser{
 
         /**
          * Should be synchronized/thread safe!
          * @param data
+         * @return false if the webpage isn't wanted after all (its images won't be fetched).
+         */
+        public boolean onDownloadReady(WebsiteData data);
+
+        /**
+         * Should be synchronized/thread safe!
+         * @param url
+         * @return true if the webpage at a url was already saved.
          */
-        public void onDownloadReady(WebsiteData data);
+        public boolean isSaved(String url);
+    }
+
+    /**
+     * @param stagingDirPath where bodies are stored while they're downloaded
+     * (emptied now, except for recent transfers to resume).
+     * @param maxConcurrentDownloads how many downloads can run at once.
+     * @param maxDownloadsPerHost how many of them can talk to the same host.
+     * @param maxImageSize larger images (in bytes) are dropped.
+     * @param imageByteBudget how many bytes of images can be in flight at once.
+     */
+    public Downloader(String stagingDirPath, int maxConcurrentDownloads, int maxDownloadsPerHost, long maxImageSize, long imageByteBudget){
+        this.executor = new DownloadExecutor(maxConcurrentDownloads, maxDownloadsPerHost);
+        this.maxImageSize = Math.max(1, maxImageSize);
+        this.imageBudget = new ByteBudget(imageByteBudget);
+        this.policy = new FailurePolicy(MAX_ATTEMPTS, RETRY_BASE_DELAY, RETRY_MAX_DELAY, CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_COOL_DOWN);
+        this.client = new HttpClient(CONNECT_TIMEOUT, READ_TIMEOUT);
+
+        //leftovers of a previous run (except the recent transfers to resume)
+        stagingDir = new File(stagingDirPath);
+        File[] leftovers = stagingDir.listFiles();
+        if(leftovers!=null){
+            for(File file : leftovers){
+                boolean resumable = file.getName().endsWith(ResumableTransfer.PART_EXTENSION)
+                        || file.getName().endsWith(ResumableTransfer.STATE_EXTENSION);
+                if(!resumable || System.currentTimeMillis()-file.lastModified()>MAX_PART_AGE){
+                    file.delete();
+                }
+            }
+        }
+        stagingDir.mkdirs();
+    }
+
+    /**
+     * Change the limits on the images.
+     * @param maxImageSize larger images (in bytes) are dropped.
+     * @param imageByteBudget how many bytes of images can be in flight at once.
+     */
+    public void setImageLimits(long maxImageSize, long imageByteBudget){
+        this.maxImageSize = Math.max(1, maxImageSize);
+        imageBudget.setCapacity(imageByteBudget);
+    }
+
+    /**
+     * Change the timeouts of the HTTP client.
+     * @param connectTimeout (ms)
+     * @param readTimeout the max time (ms) without receiving anything.
+     */
+    public void setTimeouts(int connectTimeout, int readTimeout){
+        client.setTimeouts(connectTimeout, readTimeout);
+    }
+
+    /**
+     * Change the limits of the crawls (see downloadAll()).
+     * @param maxDepth how many links away from the homepage a crawl can go.
+     * @param politenessDelay the min time (ms) between the requests of a crawl to the same host.
+     */
+    public void setCrawlLimits(int maxDepth, long politenessDelay){
+        this.maxCrawlDepth = Math.max(1, maxDepth);
+        executor.setPolitenessDelay(politenessDelay);
     }
 
-    public Downloader(){
-        this.activeThreads = new ArrayList<>();
+    /**
+     * Replace the failure policy.
+     * @param policy
+     */
+    public void setFailurePolicy(FailurePolicy policy){
+        this.policy = policy;
+    }
+
+    /**
+     * Get the counters of the failure policy, for each host.
+     * @return
+     */
+    public List<String> getHostStats(){
+        return policy.getStats();
+    }
+
+    /**
+     * Set the journal that keeps the queue on disk (null for none).
+     * @param journal
+     */
+    public void setJournal(DownloadJournal journal){
+        this.journal = journal;
+    }
+
+    /**
+     * Queue again the downloads that the journal says weren't done
+     * (eg: because the app got killed), and pause if they were paused.
+     * Call it once, after setting the listener.
+     */
+    public void restore(){
+
+        DownloadJournal journal = this.journal;
+        if(journal==null){
+            return;
+        }
+
+        if(journal.isPaused()){
+            executor.pause();
+        }
+
+        //the frontiers of the unfinished crawls
+        HashMap<Long, CrawlFrontier> frontiers = new HashMap<>();
+
+        for(DownloadJournal.Entry entry : journal.getPending()){
+
+            CrawlFrontier frontier = null;
+            long crawlId = entry.type==DownloadJournal.Entry.CRAWL? entry.id : entry.crawlId;
+            DownloadJournal.Entry crawl = crawlId==0? null : journal.getCrawl(crawlId);
+            if(crawl!=null){
+                frontier = frontiers.get(crawlId);
+                if(frontier==null){
+                    frontier = new CrawlFrontier(crawl.url, maxCrawlDepth, crawl.pathPattern);
+                    for(String url : journal.getUrlsOfCrawl(crawlId)){
+                        frontier.markSeen(url);
+                    }
+                    frontiers.put(crawlId, frontier);
+                }
+            }
+
+            if(entry.type==DownloadJournal.Entry.CRAWL){
+                executor.submit(new DownloadAllTask(entry.url, frontier, entry, entry.priority));
+            }else{
+                executor.submit(new DownloadTask(entry.url, entry.refresh, frontier, entry.depth, entry, entry.priority));
+            }
+        }
+    }
+
+    /**
+     * Set the cache of the webpages (null for none).
+     * @param cache
+     */
+    public void setCache(HttpCache cache){
+        this.cache = cache;
     }
 
     public void addListener(WebUser listener) {
@@ -34,144 +260,541 @@ public class Downloader {
     }
 
 
+    /**
+     * Download a webpage, unless it was already saved.
+     * @param address
+     */
     public void download(String address) {
-        DownloadThread d = new DownloadThread(address);
-        activeThreads.add(d);
-        d.start();
+        download(address, false, DownloadExecutor.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Download a webpage.
+     * @param address
+     * @param refresh true to download it even if it was already saved.
+     * @param priority (see DownloadExecutor.Priority)
+     */
+    public void download(String address, boolean refresh, DownloadExecutor.Priority priority) {
+
+        if(!refresh && listener!=null && listener.isSaved(address)){
+            return;
+        }
+
+        DownloadJournal.Entry entry = enqueued(DownloadJournal.Entry.PAGE, address, refresh, 0, 0, null, priority);
+        executor.submit(new DownloadTask(address, refresh, null, 0, entry, priority));
     }
 
+    /**
+     * Crawl a website from its homepage, downloading the new articles it links to.
+     * @param homepage
+     */
     public void downloadAll(String homepage){
-        DownloadAllThread t = new DownloadAllThread(homepage);
-        t.start();
+        downloadAll(homepage, null, DownloadExecutor.Priority.BULK);
+    }
+
+    /**
+     * Crawl a website from its homepage, downloading the new articles it links to.
+     * @param homepage
+     * @param pathPattern a regex the paths of the articles must contain a match of (null for any).
+     * @param priority of the homepage and of all of the articles (see DownloadExecutor.Priority).
+     */
+    public void downloadAll(String homepage, String pathPattern, DownloadExecutor.Priority priority){
+        DownloadJournal.Entry entry = enqueued(DownloadJournal.Entry.CRAWL, homepage, false, 0, 0, pathPattern, priority);
+        executor.submit(new DownloadAllTask(homepage, new CrawlFrontier(homepage, maxCrawlDepth, pathPattern), entry, priority));
+    }
+
+    /**
+     * Record a new download in the journal.
+     * @return its entry, or null if there's no journal.
+     */
+    private DownloadJournal.Entry enqueued(char type, String url, boolean refresh, int depth, long crawlId, String pathPattern, DownloadExecutor.Priority priority){
+        DownloadJournal journal = this.journal;
+        return journal==null? null : journal.enqueued(type, url, refresh, depth, crawlId, pathPattern, priority);
+    }
+
+    /**
+     * Queue the downloads of the links of a page that the crawl's frontier lets through.
+     * @param doc
+     * @param frontier
+     * @param depth the depth of the links.
+     * @param crawlId the crawl's id in the journal (0 if none).
+     * @param priority the crawl's priority.
+     */
+    private void followLinks(Document doc, CrawlFrontier frontier, int depth, long crawlId, DownloadExecutor.Priority priority){
+
+        for(Element e : doc.select("a[href]")){
+
+            String link = e.absUrl("href");
+            if(!frontier.offer(link, depth)){
+                continue;
+            }
+
+            if(listener!=null && listener.isSaved(link)){
+                continue;
+            }
+
+            DownloadJournal.Entry entry = enqueued(DownloadJournal.Entry.PAGE, link, false, depth, crawlId, null, priority);
+            executor.submit(new DownloadTask(link, false, frontier, depth, entry, priority));
+        }
+    }
+
+    /**
+     * Get the urls waiting to be downloaded, in order.
+     * @return
+     */
+    public List<String> getQueue(){
+        List<String> urls = new ArrayList<>();
+        for(DownloadExecutor.Task task : executor.getQueued()){
+            urls.add(task.getUrl());
+        }
+        return urls;
+    }
+
+    /**
+     * Get the urls being downloaded.
+     * @return
+     */
+    public List<String> getActive(){
+        List<String> urls = new ArrayList<>();
+        for(DownloadExecutor.Task task : executor.getRunning()){
+            urls.add(task.getUrl());
+        }
+        return urls;
     }
 
-    class DownloadAllThread extends Thread{
+    /**
+     * Task that downloads a homepage, and queues the download of the new articles it links to.
+     */
+    class DownloadAllTask extends RetryingTask{
+
+        private final CrawlFrontier frontier;
 
-        String homepage;
+        /**
+         * The crawl's entry in the journal (null if none).
+         */
+        private final DownloadJournal.Entry entry;
+
+        public DownloadAllTask(String homepage, CrawlFrontier frontier, DownloadJournal.Entry entry, DownloadExecutor.Priority priority){
+            super(homepage, priority);
+            this.frontier = frontier;
+            this.entry = entry;
+        }
 
-        public DownloadAllThread(String homepage){
-            this.homepage = homepage;
+        @Override
+        public boolean isPolite() {
+            return true;
         }
 
-        public void run(){
+        @Override
+        void attempt() throws IOException {
 
-            Document doc = downloadDocument(homepage);
-            Elements linkElems =  doc.select("a");
+            started(entry);
 
-            for(Element e : linkElems){
-                String link = e.absUrl("href");
-                download(link);
+            Document doc = downloadDocument(getUrl());
+            if(doc==null){
+                failed(entry);
+                return;
             }
+
+            followLinks(doc, frontier, 1, entry==null? 0 : entry.id, getPriority());
+            done(entry);
+        }
+
+        @Override
+        void giveUp() {
+            failed(entry);
         }
 
     }
 
 
-    private Document downloadDocument(String address) {
+    /**
+     * Download and parse a webpage.
+     *
+     * The body goes through a ResumableTransfer, so an interrupted download
+     * picks up where it left off the next time. If the cache has the webpage
+     * (and there's nothing to resume), the request is conditional, and the cached
+     * copy is used if the server says it's not modified. A fresh copy that can be
+     * revalidated is stored in the cache.
+     * @param address
+     * @return null if there's no webpage to parse (eg: too large).
+     * @throws IOException if it failed.
+     */
+    private Document downloadDocument(String address) throws IOException {
+
+        HttpCache cache = this.cache;
+        HttpCache.Entry cached = cache==null? null : cache.get(address);
+
+        ResumableTransfer transfer = new ResumableTransfer(client, address, stagingDir);
         try {
-            return Jsoup.connect(address).get();
+
+            HashMap<String, String> headers = new HashMap<>();
+            if(cached!=null && cached.etag!=null){
+                headers.put("If-None-Match", cached.etag);
+            }
+            if(cached!=null && cached.lastModified!=null){
+                headers.put("If-Modified-Since", cached.lastModified);
+            }
+
+            File body = transfer.run(headers, false, MAX_DOCUMENT_SIZE, null);
+
+            //not modified: use the cached copy
+            if(body==null && transfer.getStatusCode()==304 && cached!=null){
+                try{
+                    return Jsoup.parse(cached.getBody(), cached.charset, cached.finalUrl);
+                }catch (IOException e){
+                    //it got evicted meanwhile: fetch it again
+                    cache.remove(address);
+                    return downloadDocument(address);
+                }
+            }
+
+            if(body==null){
+                return null;
+            }
+
+            try{
+                Document doc = Jsoup.parse(body, transfer.getCharset(), transfer.getFinalUrl());
+                store(cache, address, transfer, body);
+                return doc;
+            }finally {
+                body.delete();
+            }
+
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException(e.getMessage());
+        } finally {
+            transfer.close();
+        }
+    }
+
+    /**
+     * Store a downloaded webpage in the cache,
+     * if it can be revalidated and it's allowed to.
+     * @param cache (null for none)
+     * @param address
+     * @param transfer
+     * @param body
+     */
+    private static void store(HttpCache cache, String address, ResumableTransfer transfer, File body){
+
+        if(cache==null){
+            return;
+        }
+
+        String cacheControl = transfer.getCacheControl();
+        if((transfer.getEtag()==null && transfer.getLastModified()==null)
+                || (cacheControl!=null && cacheControl.toLowerCase().contains("no-store"))){
+            cache.remove(address);
+            return;
+        }
+
+        try(InputStream in = new FileInputStream(body)){
+            cache.put(address, transfer.getFinalUrl(), transfer.getEtag(), transfer.getLastModified(), transfer.getCharset(), in);
         } catch (IOException e) {
             e.printStackTrace();
         }
-
-        return null;
     }
 
-    private Connection.Response downloadImage(String address) {
+    /**
+     * Download an image into a new file in the staging directory.
+     *
+     * It goes through a ResumableTransfer (so an interrupted download picks up
+     * where it left off the next time), and it reserves the bytes still to be
+     * received (or the max size if undeclared) from the byte budget, waiting if needed.
+     * @param address
+     * @return the file, or null if the image is too large.
+     * @throws IOException if it failed.
+     */
+    private File downloadImage(String address) throws IOException {
+
+        ResumableTransfer transfer = new ResumableTransfer(client, address, stagingDir);
         try {
-            return Jsoup.connect(address).ignoreContentType(true).execute();
-        } catch (Exception e) {
-            e.printStackTrace();
+            return transfer.run(null, true, maxImageSize, imageBudget);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException(e.getMessage());
+        } finally {
+            transfer.close();
         }
-        return null;
     }
 
 
+    /**
+     * Start the queued downloads again.
+     */
     public void resumeAll() {
-        new Thread(){
-            public void run(){
-                for(Thread t : activeThreads) {
-                    t.start();
-                }
-            }
-        }.start();
+        executor.resume();
+        DownloadJournal journal = this.journal;
+        if(journal!=null){
+            journal.setPaused(false);
+        }
     }
 
-
+    /**
+     * Stop starting queued downloads (the running ones get to finish),
+     * until resumeAll() (even after a restart).
+     */
     public void stopAll() {
+        executor.pause();
+        DownloadJournal journal = this.journal;
+        if(journal!=null){
+            journal.setPaused(true);
+        }
+    }
 
-        new Thread(){
-            public void run(){
-                for(Thread t : activeThreads) {
-                    t.interrupt();
-                }
-            }
-        }.start();
+    private void started(DownloadJournal.Entry entry){
+        DownloadJournal journal = this.journal;
+        if(journal!=null && entry!=null){
+            journal.started(entry.id);
+        }
+    }
 
+    private void done(DownloadJournal.Entry entry){
+        DownloadJournal journal = this.journal;
+        if(journal!=null && entry!=null){
+            journal.done(entry.id);
+        }
+    }
+
+    private void failed(DownloadJournal.Entry entry){
+        DownloadJournal journal = this.journal;
+        if(journal!=null && entry!=null){
+            journal.failed(entry.id);
+        }
     }
 
     /**
-     * Thread that downloads a single webpage and puts the data in a WebsiteData object.
+     * Task that downloads a single webpage and puts the data in a WebsiteData object.
      */
-    class DownloadThread extends Thread{
-
-        private String address;
+    class DownloadTask extends RetryingTask{
 
         private Document doc;
 
-        public DownloadThread(String address) {
-            this.address = address;
+        private final boolean refresh;
+
+        /**
+         * The crawl that found this webpage (null if it was requested directly).
+         */
+        private final CrawlFrontier frontier;
+
+        /**
+         * How many links away from the crawl's homepage it is.
+         */
+        private final int depth;
+
+        /**
+         * This download's entry in the journal (null if none).
+         */
+        private final DownloadJournal.Entry entry;
+
+        public DownloadTask(String address, boolean refresh, CrawlFrontier frontier, int depth, DownloadJournal.Entry entry, DownloadExecutor.Priority priority) {
+            super(address, priority);
+            this.refresh = refresh;
+            this.frontier = frontier;
+            this.depth = depth;
+            this.entry = entry;
+        }
+
+        @Override
+        public boolean isPolite() {
+            return frontier!=null;
         }
 
 
-        public void run() {
+        @Override
+        void giveUp() {
+            failed(entry);
+        }
 
-            if(isInterrupted()){
+        @Override
+        void attempt() throws IOException {
+
+            //it got saved while this was waiting
+            if(!refresh && listener.isSaved(getUrl())){
+                done(entry);
                 return;
             }
 
+            started(entry);
+
             //try downloading the document
-            doc = downloadDocument(address);
+            doc = downloadDocument(getUrl());
 
             //stop if the document is null
             if(doc==null) {
+                failed(entry);
                 return;
             }
 
-            ArrayList<Connection.Response> images = new ArrayList<>();
+            //get the (absolute) urls of the images
+            ArrayList<String> imageUrls = new ArrayList<>();
+            for(Element e : doc.select("img")) {
+                imageUrls.add(e.absUrl("src"));
+            }
 
-            //get the image elements
-            Elements elements = doc.select("img");
+            WebsiteData data = new WebsiteData(getUrl(), doc, imageUrls.size(), refresh);
 
-            //for each element download the image
-            for(Element e : elements) {
+            //hand over the text right away, the images follow
+            if(listener.onDownloadReady(data)){
+                new ImageFetch(data, imageUrls, getPriority()).start();
+            }
 
-                //absolute URL on src
-                String absoluteUrl = e.absUrl("src");
+            //keep crawling
+            if(frontier!=null && frontier.canGoDeeper(depth)){
+                followLinks(doc, frontier, depth+1, entry==null? 0 : entry.crawlId, getPriority());
+            }
 
-                //download the image
-                Connection.Response img =  downloadImage(absoluteUrl);
-                if(img!=null) {
-                    images.add(img);
-                }
+            //(its images aren't journaled: a restart keeps the page as it is)
+            done(entry);
 
-            }
+        }
 
+    }
+
+    /**
+     * Fetches the images of an article in parallel (at most MAX_PARALLEL_IMAGES
+     * at once), as follow-up tasks of the executor (with the article's priority),
+     * and hands them to its WebsiteData.
+     */
+    class ImageFetch {
 
-            WebsiteData data = new WebsiteData(doc, images);
+        private final WebsiteData data;
+        private final List<String> urls;
+        private final DownloadExecutor.Priority priority;
 
-            activeThreads.remove(this);
+        /**
+         * The next image to fetch.
+         */
+        private int next = 0;
 
-            listener.onDownloadReady(data);
+        ImageFetch(WebsiteData data, List<String> urls, DownloadExecutor.Priority priority){
+            this.data = data;
+            this.urls = urls;
+            this.priority = priority;
+        }
 
+        void start(){
+            for(int i=0; i<MAX_PARALLEL_IMAGES; i++){
+                fetchNext();
+            }
         }
 
+        /**
+         * Queue the fetch of the next image, if there's one left.
+         */
+        private synchronized void fetchNext(){
+
+            if(next>=urls.size()){
+                return;
+            }
+
+            final int index = next++;
+
+            executor.submitFollowUp(new RetryingTask(urls.get(index), priority) {
+
+                @Override
+                boolean isFollowUp() {
+                    return true;
+                }
+
+                @Override
+                void attempt() throws IOException {
+                    data.setImage(index, downloadImage(getUrl()));
+                    fetchNext();
+                }
+
+                @Override
+                void giveUp() {
+                    data.setImage(index, null);
+                    fetchNext();
+                }
+            });
+        }
     }
 
+    /**
+     * A download that gets retried (see FailurePolicy) if it fails
+     * for a reason that may go away, and put off while its host's circuit is open.
+     */
+    abstract class RetryingTask extends DownloadExecutor.Task {
 
+        /**
+         * How many attempts were made (not counting those put off by an open circuit).
+         */
+        private int attempts = 0;
 
+        RetryingTask(String url, DownloadExecutor.Priority priority){
+            super(url, priority);
+        }
 
+        /**
+         * True if it goes ahead of the other tasks of its priority (see DownloadExecutor.submitFollowUp()).
+         * @return
+         */
+        boolean isFollowUp(){
+            return false;
+        }
 
+        /**
+         * Make an attempt.
+         * @throws IOException if it failed.
+         */
+        abstract void attempt() throws IOException;
 
+        /**
+         * Called when it failed for good.
+         */
+        abstract void giveUp();
+
+        @Override
+        public final void run() {
+
+            FailurePolicy policy = Downloader.this.policy;
+
+            //the host's circuit is open: don't even try now, and don't count it as an attempt
+            //(queued again for when the circuit lets a request through)
+            long wait = policy.waitFor(getHost());
+            if(wait>0){
+                executor.submitLater(this, isFollowUp(), wait);
+                return;
+            }
+
+            attempts++;
+
+            try{
+                attempt();
+                policy.onSuccess(getHost());
+            }catch (IOException e){
+                e.printStackTrace();
+                if(policy.onFailure(getHost(), e)){
+                    retryOrGiveUp(policy, policy.backoff(attempts));
+                }else{
+                    policy.onGiveUp(getHost());
+                    giveUp();
+                }
+            }catch (RuntimeException e){
+                //(eg: a malformed url, or a page the parser chokes on: trying again won't help,
+                //and the task must still be given up on, or its journal entry and images stay pending)
+                e.printStackTrace();
+                policy.onGiveUp(getHost());
+                giveUp();
+            }
+        }
+
+        /**
+         * Queue it again after a delay, unless it's out of attempts.
+         * @param policy
+         * @param delay
+         */
+        private void retryOrGiveUp(FailurePolicy policy, long delay){
+            if(attempts<policy.getMaxAttempts()){
+                policy.onRetry(getHost());
+                executor.submitLater(this, isFollowUp(), delay);
+            }else{
+                policy.onGiveUp(getHost());
+                giveUp();
+            }
+        }
+    }
 
 }
@@ -1,9 +1,7 @@
 package com.luxlunaris.openarticlereader.model.classes;
 
-import android.util.Log;
-
-import com.luxlunaris.openarticlereader.control.interfaces.PageListener;
 import com.luxlunaris.openarticlereader.model.classes.AbstractPage;
+import com.luxlunaris.openarticlereader.model.services.DebugLog;
 import com.luxlunaris.openarticlereader.model.services.FileIO;
 
 import java.io.File;
@@ -34,7 +32,7 @@ public class EditablePage extends AbstractPage {
         parNum+=1;
 
         //prepare a new file in this Page's imgDir
-        File imageCopy = new File(imageDir.getPath()+File.separator+System.currentTimeMillis());
+        File imageCopy = newImageFile();
 
         //copy provided image to this Page's imgDir
         FileIO.copyFile(path, imageCopy.getPath());
@@ -126,7 +124,7 @@ public class EditablePage extends AbstractPage {
 
         //test log how many lines in each paragraph
         for(int i =0; i<numLinesPerPar.length; i++){
-            Log.d("LINE_NUM", "par "+i+" has: "+numLinesPerPar[i]+" lines");
+            DebugLog.d("LINE_NUM", "par "+i+" has: "+numLinesPerPar[i]+" lines");
         }
 
         //convert the lineNum to a paragraph num
@@ -134,7 +132,7 @@ public class EditablePage extends AbstractPage {
         for(int i =0; i<numLinesPerPar.length; i++){
             accumulLines += numLinesPerPar[i];
             if(lineNum <= accumulLines){
-                Log.d("LINE_NUM", "line "+lineNum+ " is in paragraph: "+i);
+                DebugLog.d("LINE_NUM", "line "+lineNum+ " is in paragraph: "+i);
                 return i;
             }
         }
@@ -157,7 +155,7 @@ public class EditablePage extends AbstractPage {
     public void addHtmlTag(int pos, String tag){
 
         int lineNum = getLine(pos);
-        Log.d("LINE_NUM", lineNum+"");
+        DebugLog.d("LINE_NUM", lineNum+"");
 
         //get the paragraphs
         String[] pars = getParagraphs();
@@ -228,12 +226,10 @@ public class EditablePage extends AbstractPage {
             throw new IllegalStateException("Tried editing page in recycle bin!");
         }
 
-        FileIO.write(textFile.getPath(), text);
+        writeSource(text);
 
         //notify the listeners
-        for(PageListener listener : listeners){
-            listener.onModified(this);
-        }
+        notifyModified();
 
         //delete any non-used image files.
         checkDeleteImages();
@@ -254,14 +250,14 @@ public class EditablePage extends AbstractPage {
         //for each image...
         for(File imgFile : imageDir.listFiles()){
 
-            Log.d("IMAGE_DEL", imgFile.getName());
+            DebugLog.d("IMAGE_DEL", imgFile.getName());
 
             String nameOfImage = imgFile.getName();
 
             //if the name of the image is not in the html source, the image file is useless
             if(!text.contains(nameOfImage)){
                 imgFile.delete();
-                Log.d("IMAGE_DEL", imgFile.getName() + "no longer in use, deleted!");
+                DebugLog.d("IMAGE_DEL", imgFile.getName() + "no longer in use, deleted!");
             }
 
         }
@@ -0,0 +1,243 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.luxlunaris.openarticlereader.model.exceptions.HttpStatusException;
+import com.luxlunaris.openarticlereader.model.exceptions.UnsupportedContentTypeException;
+import com.luxlunaris.openarticlereader.model.services.DebugLog;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Decides what to do when a download fails.
+ *
+ * Retryable failures (timeouts, dropped connections, 5xx, 429, ...) are retried
+ * a bounded number of times, after a jittered exponential backoff.
+ * Other failures (eg: 404) are final.
+ *
+ * Each host has a circuit breaker: after too many retryable failures in a row,
+ * the host is left alone for a cool-down period (requests to it are put off
+ * rather than sent). After that, a single request is let through (and the others
+ * are put off for another cool-down): if it succeeds the circuit closes.
+ *
+ * It keeps counters for each host, to see it working.
+ */
+public class FailurePolicy {
+
+    /**
+     * How many times a download is attempted at most.
+     */
+    private final int maxAttempts;
+
+    /**
+     * The backoff before the first retry (ms), doubled at each retry.
+     */
+    private final long baseDelay;
+
+    /**
+     * The max backoff (ms).
+     */
+    private final long maxDelay;
+
+    /**
+     * How many retryable failures in a row open a host's circuit.
+     */
+    private final int failureThreshold;
+
+    /**
+     * How long (ms) a host's circuit stays open.
+     */
+    private final long coolDown;
+
+    private final HashMap<String, HostStats> hosts;
+
+    private final Random random;
+
+
+    public FailurePolicy(int maxAttempts, long baseDelay, long maxDelay, int failureThreshold, long coolDown){
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.coolDown = coolDown;
+        this.hosts = new HashMap<>();
+        this.random = new Random();
+    }
+
+    /**
+     * Decide whether a request to a host can be sent now.
+     * @param host
+     * @return 0 if it can, or how long (ms) until the host's circuit lets requests through.
+     */
+    public synchronized long waitFor(String host){
+
+        HostStats stats = statsOf(host);
+        long now = System.currentTimeMillis();
+
+        if(stats.openUntil==0){
+            return 0;
+        }
+
+        //still cooling down
+        if(now<stats.openUntil){
+            stats.shortCircuited++;
+            return stats.openUntil-now;
+        }
+
+        //half open: let this request through, put off the others for another cool-down
+        stats.openUntil = now+coolDown;
+        return 0;
+    }
+
+    /**
+     * Record a request that got an answer.
+     * @param host
+     */
+    public synchronized void onSuccess(String host){
+        HostStats stats = statsOf(host);
+        stats.successes++;
+        stats.consecutiveFailures = 0;
+        stats.openUntil = 0;
+    }
+
+    /**
+     * Record a failed request.
+     * @param host
+     * @param e
+     * @return true if it should be retried.
+     */
+    public synchronized boolean onFailure(String host, IOException e){
+
+        HostStats stats = statsOf(host);
+        stats.failures++;
+
+        boolean retryable = isRetryable(e);
+
+        //the host answered (eg: 404): it's alive
+        if(!retryable){
+            stats.consecutiveFailures = 0;
+            stats.openUntil = 0;
+            return false;
+        }
+
+        stats.consecutiveFailures++;
+        if(stats.openUntil==0 && stats.consecutiveFailures>=failureThreshold){
+            stats.circuitOpenings++;
+            stats.openUntil = System.currentTimeMillis()+coolDown;
+            DebugLog.d("DOWNLOAD_CIRCUIT", host+" failed "+stats.consecutiveFailures+" times in a row, left alone for "+coolDown+"ms");
+        }
+        return true;
+    }
+
+    /**
+     * Record a retry.
+     * @param host
+     */
+    public synchronized void onRetry(String host){
+        statsOf(host).retries++;
+    }
+
+    /**
+     * Record a download that failed for good.
+     * @param host
+     */
+    public synchronized void onGiveUp(String host){
+        statsOf(host).givenUp++;
+    }
+
+    public int getMaxAttempts(){
+        return maxAttempts;
+    }
+
+    /**
+     * Get the backoff before a retry: a random time between half
+     * and all of the exponential delay (so that retries don't come in bursts).
+     * @param attempt how many attempts were made already (at least 1).
+     * @return (ms)
+     */
+    public long backoff(int attempt){
+        long delay = baseDelay<<Math.min(Math.max(0, attempt-1), 20);
+        delay = Math.min(Math.max(delay, 0), maxDelay);
+        synchronized (random){
+            return delay/2+(long)(random.nextDouble()*(delay/2+1));
+        }
+    }
+
+    /**
+     * Get the counters of each host, as "host: ..." lines.
+     * @return
+     */
+    public synchronized List<String> getStats(){
+        ArrayList<String> lines = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for(Map.Entry<String, HostStats> entry : hosts.entrySet()){
+            HostStats stats = entry.getValue();
+            lines.add(entry.getKey()+": "
+                    +stats.successes+" ok, "
+                    +stats.failures+" failed, "
+                    +stats.retries+" retried, "
+                    +stats.givenUp+" given up, "
+                    +stats.shortCircuited+" short-circuited, "
+                    +stats.circuitOpenings+" circuit openings"
+                    +(stats.openUntil>now? " (open)" : ""));
+        }
+        return lines;
+    }
+
+    /**
+     * True if a failure is likely to go away by retrying.
+     * @param e
+     * @return
+     */
+    public static boolean isRetryable(IOException e){
+
+        if(e instanceof HttpStatusException){
+            int status = ((HttpStatusException)e).getStatusCode();
+            return status==408 || status==425 || status==429 || status>=500;
+        }
+
+        //what's asked for is wrong, not the connection
+        if(e instanceof MalformedURLException || e instanceof UnsupportedContentTypeException){
+            return false;
+        }
+
+        //timeouts, dropped connections, no network, bodies cut short, ...
+        return true;
+    }
+
+    private HostStats statsOf(String host){
+        HostStats stats = hosts.get(host);
+        if(stats==null){
+            stats = new HostStats();
+            hosts.put(host, stats);
+        }
+        return stats;
+    }
+
+
+    /**
+     * The state and counters of a host.
+     */
+    private static class HostStats {
+
+        int consecutiveFailures;
+
+        /**
+         * When the circuit closes again (0 if closed).
+         */
+        long openUntil;
+
+        long successes;
+        long failures;
+        long retries;
+        long givenUp;
+        long shortCircuited;
+        long circuitOpenings;
+    }
+
+
+}
@@ -0,0 +1,377 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+
+/**
+ * An on-disk cache of HTTP responses, keyed by url.
+ *
+ * Only responses that can be revalidated (that have an ETag or a Last-Modified header)
+ * are stored: a repeat fetch sends them back (If-None-Match/If-Modified-Since),
+ * and if the server answers 304 Not Modified, the stored body is used.
+ *
+ * Each response is a pair of files in the cache's directory, named after
+ * the hash of its url: the body, and its headers (".meta").
+ * The total size of the bodies is capped; the least recently used
+ * responses are evicted first.
+ */
+public class HttpCache {
+
+    private static final String BODY_EXTENSION = ".body";
+    private static final String META_EXTENSION = ".meta";
+
+    private final File dir;
+
+    /**
+     * The entries, by key, least recently used first.
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * The max total size of the bodies.
+     */
+    private long maxBytes;
+
+    /**
+     * The current total size of the bodies.
+     */
+    private long totalBytes;
+
+    /**
+     * False until the entries are read from the directory.
+     */
+    private boolean loaded;
+
+
+    /**
+     * (The entries get read from the directory when first needed, see load()).
+     * @param dirPath the cache's directory.
+     * @param maxBytes the max total size of the stored responses.
+     */
+    public HttpCache(String dirPath, long maxBytes){
+        this.dir = new File(dirPath);
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Read the entries from the directory, if not done yet.
+     * The other methods do it first: calling it ahead of time (eg: in the background)
+     * spares the wait to the first of them.
+     */
+    public synchronized void load(){
+        if(loaded){
+            return;
+        }
+        loaded = true;
+        dir.mkdirs();
+        scan();
+    }
+
+    /**
+     * Change the max total size of the stored responses.
+     * @param maxBytes
+     */
+    public synchronized void setMaxBytes(long maxBytes){
+        load();
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Get the stored response for a url (and mark it as recently used).
+     * @param url
+     * @return null if there's none.
+     */
+    public synchronized Entry get(String url){
+
+        load();
+        Entry entry = entries.get(keyOf(url));
+
+        //a different url with the same hash, or the body got lost
+        if(entry==null || !entry.url.equals(url) || !entry.getBody().exists()){
+            return null;
+        }
+
+        entry.getMeta().setLastModified(System.currentTimeMillis());
+        return entry;
+    }
+
+    /**
+     * Store a response, replacing the previous one for the same url.
+     * @param url
+     * @param finalUrl the url the response came from (after redirects).
+     * @param etag
+     * @param lastModified
+     * @param charset
+     * @param body
+     * @return the stored entry, or null if it can't be revalidated or stored.
+     */
+    public Entry put(String url, String finalUrl, String etag, String lastModified, String charset, InputStream body){
+
+        if(etag==null && lastModified==null){
+            return null;
+        }
+
+        //(before writing the body: loading deletes the temporary files)
+        load();
+
+        String key = keyOf(url);
+        Entry entry = new Entry(key, url, finalUrl, etag, lastModified, charset);
+
+        //write the body aside, then swap it in
+        File tmp = new File(dir, key+"_"+Thread.currentThread().getId()+".tmp");
+        long size = 0;
+        try(OutputStream out = new FileOutputStream(tmp)){
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = body.read(buffer))!=-1){
+                out.write(buffer, 0, read);
+                size += read;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return null;
+        }
+
+        synchronized (this){
+
+            if(size>maxBytes){
+                tmp.delete();
+                remove(url);
+                return null;
+            }
+
+            removeEntry(key);
+
+            if(!tmp.renameTo(entry.getBody()) || !writeMeta(entry)){
+                tmp.delete();
+                entry.getBody().delete();
+                entry.getMeta().delete();
+                return null;
+            }
+
+            entry.size = size;
+            entries.put(key, entry);
+            totalBytes += size;
+            evict();
+        }
+
+        return entry;
+    }
+
+    /**
+     * Forget the stored response for a url.
+     * @param url
+     */
+    public synchronized void remove(String url){
+        load();
+        Entry entry = entries.get(keyOf(url));
+        if(entry!=null && entry.url.equals(url)){
+            removeEntry(entry.key);
+        }
+    }
+
+    public synchronized long getTotalBytes(){
+        load();
+        return totalBytes;
+    }
+
+    /**
+     * Remove an entry and its files.
+     * @param key
+     */
+    private void removeEntry(String key){
+        Entry entry = entries.remove(key);
+        if(entry!=null){
+            totalBytes -= entry.size;
+            entry.getBody().delete();
+            entry.getMeta().delete();
+        }
+    }
+
+    /**
+     * Remove the least recently used entries until the total size fits.
+     */
+    private void evict(){
+        Iterator<Entry> iterator = entries.values().iterator();
+        while(totalBytes>maxBytes && iterator.hasNext()){
+            Entry entry = iterator.next();
+            iterator.remove();
+            totalBytes -= entry.size;
+            entry.getBody().delete();
+            entry.getMeta().delete();
+        }
+    }
+
+    /**
+     * Read the entries from the directory, ordered by their last use
+     * (the last-modified time of their meta files), and drop the incomplete ones.
+     */
+    private void scan(){
+
+        File[] files = dir.listFiles();
+        if(files==null){
+            return;
+        }
+
+        ArrayList<Entry> loaded = new ArrayList<>();
+        for(File file : files){
+
+            String name = file.getName();
+            if(!name.endsWith(META_EXTENSION)){
+                //a leftover of an interrupted put()
+                if(name.endsWith(".tmp")){
+                    file.delete();
+                }
+                continue;
+            }
+
+            Entry entry = readMeta(name.substring(0, name.length()-META_EXTENSION.length()));
+            if(entry==null || !entry.getBody().exists()){
+                file.delete();
+                continue;
+            }
+            entry.size = entry.getBody().length();
+            entry.lastUsed = file.lastModified();
+            loaded.add(entry);
+        }
+
+        Collections.sort(loaded, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry e1, Entry e2) {
+                return e1.lastUsed<e2.lastUsed? -1 : (e1.lastUsed==e2.lastUsed? 0 : 1);
+            }
+        });
+
+        for(Entry entry : loaded){
+            entries.put(entry.key, entry);
+            totalBytes += entry.size;
+        }
+
+        //bodies without a meta file
+        for(File file : files){
+            String name = file.getName();
+            if(name.endsWith(BODY_EXTENSION) && !entries.containsKey(name.substring(0, name.length()-BODY_EXTENSION.length()))){
+                file.delete();
+            }
+        }
+
+        evict();
+    }
+
+    private boolean writeMeta(Entry entry){
+
+        Properties props = new Properties();
+        props.setProperty("url", entry.url);
+        setIfNotNull(props, "finalUrl", entry.finalUrl);
+        setIfNotNull(props, "etag", entry.etag);
+        setIfNotNull(props, "lastModified", entry.lastModified);
+        setIfNotNull(props, "charset", entry.charset);
+
+        try(OutputStream out = new FileOutputStream(entry.getMeta())){
+            props.store(out, null);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private Entry readMeta(String key){
+
+        Properties props = new Properties();
+        try(InputStream in = new FileInputStream(new File(dir, key+META_EXTENSION))){
+            props.load(in);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        String url = props.getProperty("url");
+        if(url==null){
+            return null;
+        }
+
+        return new Entry(key, url, props.getProperty("finalUrl"), props.getProperty("etag"),
+                props.getProperty("lastModified"), props.getProperty("charset"));
+    }
+
+    private static void setIfNotNull(Properties props, String name, String value){
+        if(value!=null){
+            props.setProperty(name, value);
+        }
+    }
+
+    /**
+     * Get the key (the name of the files) of a url.
+     * @param url
+     * @return
+     */
+    static String keyOf(String url){
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(url.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder();
+            for(byte b : hash){
+                key.append(Character.forDigit((b>>4)&0xF, 16)).append(Character.forDigit(b&0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            //never happens: SHA-1 and UTF-8 are always there
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+
+    /**
+     * A stored response.
+     */
+    public class Entry {
+
+        final String key;
+        public final String url;
+        public final String finalUrl;
+        public final String etag;
+        public final String lastModified;
+        public final String charset;
+
+        long size;
+        long lastUsed;
+
+        Entry(String key, String url, String finalUrl, String etag, String lastModified, String charset){
+            this.key = key;
+            this.url = url;
+            this.finalUrl = finalUrl==null? url : finalUrl;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.charset = charset;
+        }
+
+        /**
+         * Get the file that contains the body.
+         * @return
+         */
+        public File getBody(){
+            return new File(dir, key+BODY_EXTENSION);
+        }
+
+        File getMeta(){
+            return new File(dir, key+META_EXTENSION);
+        }
+    }
+
+
+}
@@ -0,0 +1,348 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The HTTP client shared by all of the downloads.
+ *
+ * It's built on HttpURLConnection, whose connections are kept alive and
+ * pooled per host by the platform, provided that each response's body
+ * is read to the end and closed, rather than disconnected:
+ * Response.close() takes care of that, unless too much of the body is left
+ * (then reading it all would cost more than a new connection).
+ * How many idle connections the pool keeps per host is set once for the
+ * whole app, at startup: see setMaxIdleConnectionsPerHost().
+ *
+ * It asks for compressed bodies (gzip, deflate) unless told otherwise,
+ * and decodes them while they're read. It follows redirects (also between
+ * http and https), and gives up on slow connections after its timeouts.
+ */
+public class HttpClient {
+
+    /**
+     * The max number of redirects to follow for a request.
+     */
+    private static final int MAX_REDIRECTS = 10;
+
+    /**
+     * Closing a response reads what's left of its body (to reuse the connection)
+     * only if it's at most this many bytes.
+     */
+    private static final int MAX_DRAIN = 64*1024;
+
+    /**
+     * Some websites serve other content (or none) to unknown browsers.
+     */
+    private static final String USER_AGENT = "Mozilla/5.0 (Linux; Android 10) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/92.0.4515.159 Mobile Safari/537.36";
+
+    private volatile int connectTimeout;
+    private volatile int readTimeout;
+
+
+    /**
+     * Set how many idle connections per host the platform's pool keeps
+     * (eg: as many as there can be downloads to a host at once).
+     *
+     * It's a system property, so it's the same for the whole app, and it's
+     * read when the pool is first used: call this at startup, before any
+     * request is made; afterwards it has no effect.
+     * @param max
+     */
+    public static void setMaxIdleConnectionsPerHost(int max){
+        System.setProperty("http.maxConnections", String.valueOf(Math.max(1, max)));
+    }
+
+    /**
+     * @param connectTimeout (ms)
+     * @param readTimeout the max time (ms) without receiving anything.
+     */
+    public HttpClient(int connectTimeout, int readTimeout){
+        setTimeouts(connectTimeout, readTimeout);
+    }
+
+    /**
+     * Change the timeouts.
+     * @param connectTimeout (ms)
+     * @param readTimeout the max time (ms) without receiving anything.
+     */
+    public void setTimeouts(int connectTimeout, int readTimeout){
+        this.connectTimeout = Math.max(0, connectTimeout);
+        this.readTimeout = Math.max(0, readTimeout);
+    }
+
+    /**
+     * Send a GET request.
+     * @param url
+     * @param headers more request headers (null for none).
+     * @param compressed false to ask for the body as it is (eg: to resume it with a Range).
+     * @return the response (close it when done).
+     * @throws IOException if there's no response.
+     */
+    public Response get(String url, Map<String, String> headers, boolean compressed) throws IOException {
+
+        URL current = new URL(url);
+
+        for(int redirects = 0; ; redirects++){
+
+            HttpURLConnection connection = (HttpURLConnection) current.openConnection();
+            connection.setInstanceFollowRedirects(false);
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            connection.setRequestProperty("User-Agent", USER_AGENT);
+            connection.setRequestProperty("Accept-Encoding", compressed? "gzip, deflate" : "identity");
+            if(headers!=null){
+                for(Map.Entry<String, String> header : headers.entrySet()){
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
+            }
+
+            Response response = new Response(connection, current);
+
+            String location = response.header("Location");
+            if(!response.isRedirect() || location==null){
+                return response;
+            }
+
+            response.close();
+            if(redirects>=MAX_REDIRECTS){
+                throw new IOException("Too many redirects for "+url);
+            }
+            current = new URL(current, location);
+        }
+    }
+
+
+    /**
+     * The response to a request. Its body is decoded while it's read.
+     */
+    public static class Response implements Closeable {
+
+        private final HttpURLConnection connection;
+        private final URL url;
+        private final int statusCode;
+        private InputStream body;
+
+        /**
+         * The body as it comes from the connection (before decoding).
+         */
+        private InputStream raw;
+
+        /**
+         * How many bytes of the body (before decoding) were read.
+         */
+        private long received = 0;
+
+        /**
+         * True once the connection got dropped.
+         */
+        private boolean aborted = false;
+
+        Response(HttpURLConnection connection, URL url) throws IOException {
+            this.connection = connection;
+            this.url = url;
+            try{
+                this.statusCode = connection.getResponseCode();
+            }catch (IOException | RuntimeException e){
+                //no response: don't leave the connection open
+                connection.disconnect();
+                throw e;
+            }
+        }
+
+        public int statusCode(){
+            return statusCode;
+        }
+
+        /**
+         * Get the url the response came from (after redirects).
+         * @return
+         */
+        public String url(){
+            return url.toString();
+        }
+
+        public String header(String name){
+            return connection.getHeaderField(name);
+        }
+
+        public String contentType(){
+            return connection.getContentType();
+        }
+
+        /**
+         * Get the charset of the Content-Type.
+         * @return null if not declared.
+         */
+        public String charset(){
+            String contentType = contentType();
+            if(contentType==null){
+                return null;
+            }
+            for(String param : contentType.split(";")){
+                param = param.trim();
+                if(param.toLowerCase(Locale.ROOT).startsWith("charset=")){
+                    String charset = param.substring(8).trim().replace("\"", "").replace("'", "");
+                    return charset.isEmpty()? null : charset;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * True if the body is compressed (then its length on the wire isn't the decoded one).
+         * @return
+         */
+        public boolean isEncoded(){
+            String encoding = header("Content-Encoding");
+            return encoding!=null && !encoding.trim().equalsIgnoreCase("identity");
+        }
+
+        /**
+         * Get the length of the (decoded) body.
+         * @return -1 if unknown.
+         */
+        public long contentLength(){
+            return isEncoded()? -1 : ResumableTransfer.parseLength(header("Content-Length"));
+        }
+
+        boolean isRedirect(){
+            return statusCode==301 || statusCode==302 || statusCode==303 || statusCode==307 || statusCode==308;
+        }
+
+        /**
+         * Get the (decoded) body.
+         * @return
+         * @throws IOException
+         */
+        public synchronized InputStream body() throws IOException {
+
+            if(body!=null){
+                return body;
+            }
+
+            InputStream stream = statusCode>=400? connection.getErrorStream() : connection.getInputStream();
+            if(stream==null){
+                stream = new ByteArrayInputStream(new byte[0]);
+            }
+
+            //count the bytes as they arrive
+            raw = new FilterInputStream(stream){
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if(b!=-1){
+                        received++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if(read>0){
+                        received += read;
+                    }
+                    return read;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    long skipped = super.skip(n);
+                    received += skipped;
+                    return skipped;
+                }
+            };
+
+            String encoding = header("Content-Encoding");
+            encoding = encoding==null? "" : encoding.trim().toLowerCase(Locale.ROOT);
+
+            if(encoding.equals("gzip") || encoding.equals("x-gzip")){
+                body = new GZIPInputStream(raw, 8192);
+            }else if(encoding.equals("deflate")){
+                body = inflating(raw);
+            }else{
+                body = raw;
+            }
+            return body;
+        }
+
+        /**
+         * Drain what's left of the body and close it, so that the connection
+         * can be reused by the next request to the same host; unless more
+         * than MAX_DRAIN bytes are left (or unknown and more than that come):
+         * then drop the connection.
+         */
+        @Override
+        public synchronized void close(){
+
+            if(aborted){
+                return;
+            }
+
+            try{
+                InputStream in = body();
+
+                long length = ResumableTransfer.parseLength(header("Content-Length"));
+                if(length>=0 && length-received>MAX_DRAIN){
+                    abort();
+                    return;
+                }
+
+                byte[] buffer = new byte[4096];
+                long drained = 0;
+                int read;
+                while((read = raw.read(buffer))!=-1){
+                    drained += read;
+                    if(drained>MAX_DRAIN){
+                        abort();
+                        return;
+                    }
+                }
+                in.close();
+            }catch (IOException e){
+                //it can't be reused: let it go
+                abort();
+            }
+        }
+
+        /**
+         * Drop the connection without reading the rest of the body
+         * (eg: it's not wanted after all). Closing it afterwards does nothing.
+         */
+        public synchronized void abort(){
+            aborted = true;
+            connection.disconnect();
+        }
+
+        /**
+         * Decode a "deflate" body: zlib-wrapped as per the standard,
+         * or raw, as some servers send it.
+         * @param raw
+         * @return
+         * @throws IOException
+         */
+        private static InputStream inflating(InputStream raw) throws IOException {
+            BufferedInputStream in = new BufferedInputStream(raw);
+            in.mark(2);
+            int first = in.read();
+            int second = in.read();
+            in.reset();
+            boolean zlib = first!=-1 && second!=-1 && (first&0x0F)==8 && ((first<<8)|second)%31==0;
+            return new InflaterInputStream(in, new Inflater(!zlib), 8192);
+        }
+    }
+
+
+}
@@ -0,0 +1,160 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.luxlunaris.openarticlereader.model.interfaces.Page;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * Keeps an InvertedIndex up to date in the background.
+ *
+ * Pages to be (re-)indexed or removed are queued, and a worker thread
+ * applies them to the index in batches: it waits a little for more
+ * updates to pile up, then writes them all as a single index segment.
+ *
+ * A Page's text is read only when its batch gets written, so a Page
+ * that changes several times in a row only gets tokenized once.
+ *
+ * The pending updates are only in memory: the index records the last-modified
+ * time of each Page as of its indexing, so that the updates lost to the app
+ * being killed can be told apart (and redone) at the next start.
+ *
+ * Updates can be queued before the index is opened: they're held until
+ * it's handed over with setIndex().
+ */
+public class IndexingQueue {
+
+    /**
+     * How long (ms) the worker waits for more updates before writing a batch.
+     */
+    private static final long BATCH_DELAY = 2000;
+
+    /**
+     * A batch gets written right away once it's this big.
+     */
+    private static final int MAX_BATCH_SIZE = 200;
+
+    /**
+     * The index kept up to date (null until it's opened).
+     */
+    private InvertedIndex index;
+
+    /**
+     * Pages waiting to be (re-)indexed, by name.
+     */
+    private final LinkedHashMap<String, Page> toIndex;
+
+    /**
+     * Names of the Pages waiting to be removed from the index.
+     */
+    private final LinkedHashSet<String> toRemove;
+
+
+    public IndexingQueue(){
+        toIndex = new LinkedHashMap<>();
+        toRemove = new LinkedHashSet<>();
+
+        Thread worker = new Thread(){
+            public void run(){
+                work();
+            }
+        };
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Start applying the updates to an index.
+     * @param index
+     */
+    public synchronized void setIndex(InvertedIndex index){
+        this.index = index;
+        notifyAll();
+    }
+
+    /**
+     * Queue a Page to get its postings (re-)built.
+     * @param page
+     */
+    public synchronized void enqueueUpdate(Page page){
+        toRemove.remove(page.getName());
+        toIndex.put(page.getName(), page);
+        notifyAll();
+    }
+
+    /**
+     * Queue a Page to get removed from the index.
+     * @param page
+     */
+    public synchronized void enqueueRemoval(Page page){
+        toIndex.remove(page.getName());
+        toRemove.add(page.getName());
+        notifyAll();
+    }
+
+    /**
+     * True if there are no pending updates.
+     * @return
+     */
+    public synchronized boolean isIdle(){
+        return toIndex.isEmpty() && toRemove.isEmpty();
+    }
+
+    /**
+     * Take the pending updates in batches and apply them to the index.
+     */
+    private void work(){
+
+        while(true){
+
+            InvertedIndex index;
+            ArrayList<Page> pages;
+            ArrayList<String> removed;
+
+            synchronized (this){
+                try {
+                    //wait for the index, and for the first update
+                    while(this.index==null || isIdle()){
+                        wait();
+                    }
+
+                    //give more updates the chance to join the batch
+                    long deadline = System.currentTimeMillis()+BATCH_DELAY;
+                    long left;
+                    while(toIndex.size()+toRemove.size()<MAX_BATCH_SIZE && (left = deadline-System.currentTimeMillis())>0){
+                        wait(left);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                index = this.index;
+                pages = new ArrayList<>(toIndex.values());
+                removed = new ArrayList<>(toRemove);
+                toIndex.clear();
+                toRemove.clear();
+            }
+
+            //a batch that fails is dropped, but the worker goes on
+            //(its pages stay stale in the index, and get redone at the next start)
+            try{
+                //read the texts outside of the lock
+                //(the time first: a later change makes the page stale again)
+                HashMap<String, String> texts = new HashMap<>();
+                HashMap<String, Long> stamps = new HashMap<>();
+                for(Page page : pages){
+                    stamps.put(page.getName(), page.getLastModifiedTime());
+                    texts.put(page.getName(), page.getText());
+                }
+
+                index.update(texts, stamps, removed);
+            }catch (RuntimeException e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+
+}
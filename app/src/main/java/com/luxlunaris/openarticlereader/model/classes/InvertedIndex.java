@@ -0,0 +1,857 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.luxlunaris.openarticlereader.model.services.IntList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * A persistent inverted index: maps each term to the sorted list
+ * of the ids of the Pages that contain it (its "posting list").
+ *
+ * On disk the index is a directory with one or more immutable segments,
+ * each made of a ".dict" file (the sorted terms, kept in memory) and a ".post"
+ * file (the posting lists, read on demand). Each dictionary also records which
+ * doc ids its batch assigned to (or took away from) which Page names, so a batch
+ * is committed all at once, when its dictionary is: replaying the dictionaries in
+ * order rebuilds the doc table. A merged segment records just the live docs,
+ * and replaces everything before it.
+ *
+ * Queries are ANDed keywords, split into terms like the texts are (letters and digits).
+ * Each term is looked up in the sorted dictionaries by binary search: the last term
+ * of a keyword matches the indexed terms it's a prefix of (so "pars" finds "parser"),
+ * the others only the same term (the "c" of "c++", the "e" of "e-mail"). The resulting
+ * posting lists are intersected shortest-first. So a query costs the terms it matches
+ * and their postings, not the whole vocabulary.
+ *
+ * This isn't what KeywordMatcher does on the texts (used while there's no index yet):
+ * it finds keywords anywhere, also inside words ("ment" in "documentation") and across
+ * punctuation (the "c++" in "c++11"). The index finds words by their beginnings, and
+ * the terms of a keyword in any order.
+ */
+public class InvertedIndex {
+
+    /**
+     * Terms longer than this are truncated (urls, garbage...).
+     */
+    private static final int MAX_TERM_LENGTH = 64;
+
+    /**
+     * Identifies a segment's dictionary file.
+     */
+    private static final int MAGIC = 0x1D3E0002;
+
+    /**
+     * Past this many segments, they get merged into one.
+     */
+    private static final int MAX_SEGMENTS = 8;
+
+    /**
+     * The directory that stores the index.
+     */
+    private final File dir;
+
+    /**
+     * Page name of each doc id.
+     */
+    private final ArrayList<String> docNames;
+
+    /**
+     * The current doc id of each Page name.
+     */
+    private final HashMap<String, Integer> docIds;
+
+    /**
+     * The last-modified time each Page had when it got indexed, by name
+     * (0 if unknown).
+     */
+    private final HashMap<String, Long> docStamps;
+
+    /**
+     * The segments of this index, oldest first.
+     */
+    private final ArrayList<Segment> segments;
+
+
+    public InvertedIndex(String dirPath){
+        dir = new File(dirPath);
+        docNames = new ArrayList<>();
+        docIds = new HashMap<>();
+        docStamps = new HashMap<>();
+        segments = new ArrayList<>();
+        load();
+    }
+
+    /**
+     * Load the dictionaries of the segments (and with them the doc table) from disk.
+     */
+    private void load(){
+
+        if(!dir.exists()){
+            dir.mkdirs();
+        }
+
+        //a segment is committed once its dictionary exists
+        File[] dictFiles = dir.listFiles((d, name) -> name.endsWith(".dict"));
+        if(dictFiles==null){
+            return;
+        }
+        Arrays.sort(dictFiles, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long n1 = segmentNumber(f1), n2 = segmentNumber(f2);
+                return n1<n2? -1 : (n1==n2? 0 : 1);
+            }
+        });
+        for(File dictFile : dictFiles){
+
+            DocRecords records = new DocRecords();
+            Segment segment;
+            try {
+                segment = Segment.open(dictFile, records);
+            } catch (IOException e) {
+                e.printStackTrace();
+                continue;
+            }
+
+            //a merged segment: what came before it is left over from the merge
+            if(records.merged){
+                deleteAll(segments);
+                segments.clear();
+                docIds.clear();
+                docStamps.clear();
+                docNames.clear();
+            }
+
+            apply(records);
+            segments.add(segment);
+        }
+    }
+
+    /**
+     * Apply the doc records of a committed segment to the doc table.
+     * @param records
+     */
+    private void apply(DocRecords records){
+
+        while(docNames.size()<records.nextId){
+            docNames.add(null);
+        }
+
+        for(int i=0; i<records.ids.size(); i++){
+            int id = records.ids.get(i);
+            String name = records.names.get(i);
+            if(name.isEmpty()){
+                //the page got removed
+                String removedName = docNames.get(id);
+                Integer currentId = docIds.get(removedName);
+                if(currentId!=null && currentId==id){
+                    docIds.remove(removedName);
+                    docStamps.remove(removedName);
+                }
+            }else{
+                docNames.set(id, name);
+                docIds.put(name, id);
+                docStamps.put(name, records.stamps.get(i));
+            }
+        }
+    }
+
+    /**
+     * True if nothing was ever indexed.
+     * @return
+     */
+    public synchronized boolean isEmpty(){
+        return docIds.isEmpty();
+    }
+
+    /**
+     * True if a Page with this name was indexed.
+     * @param name
+     * @return
+     */
+    public synchronized boolean contains(String name){
+        return docIds.containsKey(name);
+    }
+
+    /**
+     * Get the last-modified time a Page had when it got indexed
+     * (to tell if it changed since).
+     * @param name
+     * @return -1 if it's not indexed, 0 if unknown.
+     */
+    public synchronized long getStamp(String name){
+        Long stamp = docStamps.get(name);
+        return stamp==null? -1 : stamp;
+    }
+
+    /**
+     * Get the names of the indexed Pages.
+     * @return
+     */
+    public synchronized List<String> getNames(){
+        return new ArrayList<>(docIds.keySet());
+    }
+
+    /**
+     * Index a batch of Pages, writing them as a single new segment.
+     * @param textsByName the plain text of each Page, by Page name.
+     */
+    public void addAll(Map<String, String> textsByName){
+        addAll(textsByName, Collections.<String, Long>emptyMap());
+    }
+
+    /**
+     * Index a batch of Pages, writing them as a single new segment.
+     * @param textsByName the plain text of each Page, by Page name.
+     * @param stampsByName the last-modified time of each Page, as of when its text was read.
+     */
+    public void addAll(Map<String, String> textsByName, Map<String, Long> stampsByName){
+        update(textsByName, stampsByName, Collections.<String>emptyList());
+    }
+
+    /**
+     * Apply a batch of changes to the index (see below).
+     * @param textsByName
+     * @param removedNames
+     */
+    public void update(Map<String, String> textsByName, Collection<String> removedNames){
+        update(textsByName, Collections.<String, Long>emptyMap(), removedNames);
+    }
+
+    /**
+     * Apply a batch of changes to the index: the removed Pages are forgotten,
+     * the (re-)indexed Pages replace their older postings. All of the new postings
+     * get written as a single new segment.
+     * @param textsByName the plain text of each (re-)indexed Page, by Page name.
+     * @param stampsByName the last-modified time of each (re-)indexed Page, as of when its text was read.
+     * @param removedNames the names of the removed Pages.
+     */
+    public synchronized void update(Map<String, String> textsByName, Map<String, Long> stampsByName, Collection<String> removedNames){
+
+        if(textsByName.isEmpty() && removedNames.isEmpty()){
+            return;
+        }
+
+        TreeMap<String, IntList> postings = new TreeMap<>();
+        DocRecords records = new DocRecords();
+        records.nextId = docNames.size();
+
+        //forget the removed pages (their old postings become dead)
+        for(String name : removedNames){
+            Integer oldId = docIds.get(name);
+            if(oldId!=null){
+                records.add(oldId, "", 0);
+            }
+        }
+
+        for(Map.Entry<String, String> entry : textsByName.entrySet()){
+
+            //assign a new doc id to the page, superseding the old one
+            int id = records.nextId++;
+            Long stamp = stampsByName.get(entry.getKey());
+            records.add(id, entry.getKey(), stamp==null? 0 : stamp);
+
+            //ids grow monotonically, so the posting lists stay sorted
+            for(String term : tokenize(entry.getValue())){
+                IntList list = postings.get(term);
+                if(list==null){
+                    list = new IntList();
+                    postings.put(term, list);
+                }
+                if(list.size()==0 || list.last()!=id){
+                    list.add(id);
+                }
+            }
+        }
+
+        //commit the postings and the doc records together:
+        //if it fails, the index stays as it was (and the pages get indexed again later)
+        try {
+            SegmentWriter writer = new SegmentWriter(dir, nextSegmentNumber(), records);
+            for(Map.Entry<String, IntList> entry : postings.entrySet()){
+                writer.add(entry.getKey(), entry.getValue());
+            }
+            segments.add(writer.commit());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        apply(records);
+
+        if(segments.size()>MAX_SEGMENTS){
+            merge();
+        }
+    }
+
+    /**
+     * Merge all of the segments into a single one, dropping
+     * the postings of removed and re-indexed Pages
+     * (and the doc records of the dead doc ids).
+     */
+    public synchronized void merge(){
+
+        if(segments.size()<2){
+            return;
+        }
+
+        //the merged segment records just the live docs
+        DocRecords records = new DocRecords();
+        records.merged = true;
+        records.nextId = docNames.size();
+        for(Map.Entry<String, Integer> entry : docIds.entrySet()){
+            records.add(entry.getValue(), entry.getKey(), docStamps.get(entry.getKey()));
+        }
+
+        ArrayList<Segment.Reader> readers = new ArrayList<>();
+        try {
+            SegmentWriter writer = new SegmentWriter(dir, nextSegmentNumber(), records);
+
+            for(Segment segment : segments){
+                readers.add(segment.reader());
+            }
+
+            //position of each segment in its own (sorted) dictionary
+            int[] cursors = new int[segments.size()];
+
+            while(true){
+
+                //find the smallest term not yet merged
+                String term = null;
+                for(int s=0; s<segments.size(); s++){
+                    Segment segment = segments.get(s);
+                    if(cursors[s]<segment.terms.length && (term==null || segment.terms[cursors[s]].compareTo(term)<0)){
+                        term = segment.terms[cursors[s]];
+                    }
+                }
+
+                if(term==null){
+                    break;
+                }
+
+                //segments are sorted by age, so are the ids in them
+                IntList merged = new IntList();
+                for(int s=0; s<segments.size(); s++){
+                    Segment segment = segments.get(s);
+                    if(cursors[s]<segment.terms.length && segment.terms[cursors[s]].equals(term)){
+                        for(int id : readers.get(s).read(cursors[s])){
+                            if(isLive(id)){
+                                merged.add(id);
+                            }
+                        }
+                        cursors[s]++;
+                    }
+                }
+
+                if(merged.size()>0){
+                    writer.add(term, merged);
+                }
+            }
+
+            Segment mergedSegment = writer.commit();
+            close(readers);
+
+            //the merged segment is committed, the old ones can go
+            deleteAll(segments);
+            segments.clear();
+            segments.add(mergedSegment);
+
+            //(forget the dead doc ids)
+            docNames.clear();
+            apply(records);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            close(readers);
+        }
+    }
+
+    /**
+     * Delete the files of some segments.
+     * @param segments
+     */
+    private void deleteAll(List<Segment> segments){
+        for(Segment segment : segments){
+            new File(dir, segment.number+".dict").delete();
+            segment.postFile.delete();
+        }
+    }
+
+    private static void close(List<Segment.Reader> readers){
+        for(Segment.Reader reader : readers){
+            reader.close();
+        }
+        readers.clear();
+    }
+
+    /**
+     * True if a doc id is the current one of its Page.
+     * @param id
+     * @return
+     */
+    private boolean isLive(int id){
+        String name = id<docNames.size()? docNames.get(id) : null;
+        if(name==null){
+            return false;
+        }
+        Integer currentId = docIds.get(name);
+        return currentId!=null && currentId==id;
+    }
+
+    /**
+     * Get the names of the Pages that contain ALL of the keywords.
+     * @param keywords
+     * @return
+     */
+    public synchronized String[] search(String[] keywords){
+
+        //collect one posting list per query term
+        ArrayList<int[]> lists = new ArrayList<>();
+        for(String keyword : keywords){
+            ArrayList<String> terms = tokenize(keyword);
+            for(int i=0; i<terms.size(); i++){
+                //(only the end of a keyword can be the beginning of a word)
+                boolean prefix = i==terms.size()-1 && Character.isLetterOrDigit(keyword.charAt(keyword.length()-1));
+                lists.add(postingsOf(terms.get(i), prefix));
+            }
+        }
+
+        if(lists.isEmpty()){
+            return new String[0];
+        }
+
+        //intersect starting from the shortest list
+        Collections.sort(lists, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] l1, int[] l2) {
+                return l1.length-l2.length;
+            }
+        });
+        int[] result = lists.get(0);
+        for(int i=1; i<lists.size() && result.length>0; i++){
+            result = intersect(result, lists.get(i));
+        }
+
+        //translate doc ids back to page names, skipping dead ids
+        ArrayList<String> names = new ArrayList<>(result.length);
+        for(int id : result){
+            if(isLive(id)){
+                names.add(docNames.get(id));
+            }
+        }
+
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Get the sorted union of the posting lists (from all segments) of a term,
+     * or of all of the terms it's a prefix of: a range of the sorted dictionaries,
+     * found by binary search.
+     * @param term
+     * @param prefix
+     * @return
+     */
+    private int[] postingsOf(String term, boolean prefix){
+
+        ArrayList<int[]> lists = new ArrayList<>();
+
+        for(Segment segment : segments){
+            Segment.Reader reader = null;
+            try {
+                int i = Arrays.binarySearch(segment.terms, term);
+                if(i<0){
+                    i = prefix? -i-1 : segment.terms.length;
+                }
+                for(; i<segment.terms.length; i++){
+                    if(prefix? !segment.terms[i].startsWith(term) : !segment.terms[i].equals(term)){
+                        break;
+                    }
+                    if(reader==null){
+                        reader = segment.reader();
+                    }
+                    lists.add(reader.read(i));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if(reader!=null){
+                    reader.close();
+                }
+            }
+        }
+
+        return union(lists);
+    }
+
+    /**
+     * Intersect two sorted int arrays, galloping through the longer one.
+     * @param small
+     * @param large
+     * @return
+     */
+    static int[] intersect(int[] small, int[] large){
+
+        IntList result = new IntList();
+        int from = 0;
+
+        for(int value : small){
+            int pos = Arrays.binarySearch(large, from, large.length, value);
+            if(pos>=0){
+                result.add(value);
+                from = pos+1;
+            }else{
+                from = -pos-1;
+            }
+            if(from>=large.length){
+                break;
+            }
+        }
+
+        return result.toArray();
+    }
+
+    /**
+     * Merge sorted int arrays into a sorted array without duplicates,
+     * all at once (k-way, through a heap): O(n log k) for n ints in k arrays.
+     * @param lists
+     * @return
+     */
+    static int[] union(List<int[]> lists){
+
+        if(lists.isEmpty()){
+            return new int[0];
+        }
+        if(lists.size()==1){
+            return lists.get(0);
+        }
+
+        final int[][] arrays = lists.toArray(new int[0][]);
+        final int[] positions = new int[arrays.length];
+
+        //the arrays that have ints left, by their next int
+        PriorityQueue<Integer> heap = new PriorityQueue<>(arrays.length, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a1, Integer a2) {
+                int v1 = arrays[a1][positions[a1]], v2 = arrays[a2][positions[a2]];
+                return v1<v2? -1 : (v1==v2? 0 : 1);
+            }
+        });
+        for(int a=0; a<arrays.length; a++){
+            if(arrays[a].length>0){
+                heap.add(a);
+            }
+        }
+
+        IntList result = new IntList();
+        while(!heap.isEmpty()){
+            int a = heap.poll();
+            int value = arrays[a][positions[a]++];
+            if(result.size()==0 || result.last()!=value){
+                result.add(value);
+            }
+            if(positions[a]<arrays[a].length){
+                heap.add(a);
+            }
+        }
+
+        return result.toArray();
+    }
+
+    /**
+     * Split a text into upper case alphanumeric terms.
+     * @param text
+     * @return
+     */
+    static ArrayList<String> tokenize(String text){
+
+        ArrayList<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+
+        for(int i=0; i<=text.length(); i++){
+            char c = i<text.length()? text.charAt(i) : ' ';
+            if(Character.isLetterOrDigit(c)){
+                if(term.length()<MAX_TERM_LENGTH){
+                    term.append(Character.toUpperCase(c));
+                }
+            }else if(term.length()>0){
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+
+        return terms;
+    }
+
+    /**
+     * The number of the next segment to be written.
+     * @return
+     */
+    private long nextSegmentNumber(){
+        return segments.isEmpty()? 0 : segments.get(segments.size()-1).number+1;
+    }
+
+    /**
+     * Get the number of a segment from the name of one of its files.
+     * @param file
+     * @return
+     */
+    private static long segmentNumber(File file){
+        String name = file.getName();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+
+    /**
+     * An immutable part of the index.
+     * The dictionary is kept in memory, the postings stay on disk.
+     */
+    static class Segment {
+
+        final long number;
+        final File postFile;
+        final String[] terms;
+        final long[] offsets;
+        final int[] counts;
+
+        private Segment(long number, File postFile, String[] terms, long[] offsets, int[] counts){
+            this.number = number;
+            this.postFile = postFile;
+            this.terms = terms;
+            this.offsets = offsets;
+            this.counts = counts;
+        }
+
+        /**
+         * Load a segment's dictionary from disk.
+         * @param dictFile
+         * @param records gets the segment's doc records.
+         * @return
+         * @throws IOException
+         */
+        static Segment open(File dictFile, DocRecords records) throws IOException{
+
+            long number = segmentNumber(dictFile);
+            File postFile = new File(dictFile.getParent(), number+".post");
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dictFile)));
+            try{
+                if(in.readInt()!=MAGIC){
+                    throw new IOException("Not an index segment: "+dictFile);
+                }
+                records.read(in);
+                int numTerms = in.readInt();
+                String[] terms = new String[numTerms];
+                long[] offsets = new long[numTerms];
+                int[] counts = new int[numTerms];
+                for(int i=0; i<numTerms; i++){
+                    terms[i] = in.readUTF();
+                    offsets[i] = in.readLong();
+                    counts[i] = in.readInt();
+                }
+                return new Segment(number, postFile, terms, offsets, counts);
+            }finally {
+                in.close();
+            }
+        }
+
+        /**
+         * Open the postings file, to read posting lists from it.
+         * @return
+         * @throws IOException
+         */
+        Reader reader() throws IOException{
+            return new Reader();
+        }
+
+        /**
+         * Reads posting lists of a segment through a single open file.
+         */
+        class Reader {
+
+            private final RandomAccessFile raf;
+
+            private Reader() throws IOException{
+                raf = new RandomAccessFile(postFile, "r");
+            }
+
+            /**
+             * Read the posting list of the i-th term.
+             * @param i
+             * @return
+             * @throws IOException
+             */
+            int[] read(int i) throws IOException{
+                byte[] bytes = new byte[4*counts[i]];
+                raf.seek(offsets[i]);
+                raf.readFully(bytes);
+                return decode(bytes, counts[i]);
+            }
+
+            void close(){
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * Decode a posting list (big-endian ints).
+         * @param bytes
+         * @param count
+         * @return
+         */
+        private static int[] decode(byte[] bytes, int count){
+            int[] ids = new int[count];
+            for(int j=0, b=0; j<ids.length; j++, b+=4){
+                ids[j] = ((bytes[b]&0xFF)<<24) | ((bytes[b+1]&0xFF)<<16) | ((bytes[b+2]&0xFF)<<8) | (bytes[b+3]&0xFF);
+            }
+            return ids;
+        }
+
+    }
+
+
+    /**
+     * The doc ids a batch assigned to Page names (or took away from them: empty name),
+     * with the last-modified times of the Pages.
+     */
+    static class DocRecords {
+
+        /**
+         * True if these are all of the live docs (of a merged segment).
+         */
+        boolean merged = false;
+
+        /**
+         * The next doc id to assign after this batch.
+         */
+        int nextId = 0;
+
+        final IntList ids = new IntList();
+        final ArrayList<String> names = new ArrayList<>();
+        final ArrayList<Long> stamps = new ArrayList<>();
+
+        void add(int id, String name, long stamp){
+            ids.add(id);
+            names.add(name);
+            stamps.add(stamp);
+        }
+
+        void write(DataOutputStream out) throws IOException{
+            out.writeBoolean(merged);
+            out.writeInt(nextId);
+            out.writeInt(ids.size());
+            for(int i=0; i<ids.size(); i++){
+                out.writeInt(ids.get(i));
+                out.writeUTF(names.get(i));
+                out.writeLong(stamps.get(i));
+            }
+        }
+
+        void read(DataInputStream in) throws IOException{
+            merged = in.readBoolean();
+            nextId = in.readInt();
+            int count = in.readInt();
+            for(int i=0; i<count; i++){
+                add(in.readInt(), in.readUTF(), in.readLong());
+            }
+        }
+    }
+
+
+    /**
+     * Writes a new segment to disk, one term at a time (in sorted order):
+     * the postings first, then the dictionary (with the doc records) that commits them.
+     */
+    static class SegmentWriter {
+
+        final long number;
+        final File dictFile;
+        final File postFile;
+        final DocRecords records;
+        final DataOutputStream post;
+        final ArrayList<String> terms = new ArrayList<>();
+        final IntList counts = new IntList();
+        long offset = 0;
+
+        SegmentWriter(File dir, long number, DocRecords records) throws IOException{
+            this.number = number;
+            this.records = records;
+            this.dictFile = new File(dir, number+".dict");
+            this.postFile = new File(dir, number+".post");
+            this.post = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(postFile)));
+        }
+
+        /**
+         * Append the posting list of the next term.
+         * @param term
+         * @param postings
+         * @throws IOException
+         */
+        void add(String term, IntList postings) throws IOException{
+            terms.add(term);
+            counts.add(postings.size());
+            for(int i=0; i<postings.size(); i++){
+                post.writeInt(postings.get(i));
+            }
+        }
+
+        /**
+         * Write the dictionary, committing the segment.
+         * @return
+         * @throws IOException
+         */
+        Segment commit() throws IOException{
+
+            post.close();
+
+            long[] offsets = new long[terms.size()];
+            File tmpFile = new File(dictFile.getPath()+".tmp");
+
+            DataOutputStream dict = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try{
+                dict.writeInt(MAGIC);
+                records.write(dict);
+                dict.writeInt(terms.size());
+                for(int i=0; i<terms.size(); i++){
+                    offsets[i] = offset;
+                    dict.writeUTF(terms.get(i));
+                    dict.writeLong(offset);
+                    dict.writeInt(counts.get(i));
+                    offset += 4L*counts.get(i);
+                }
+            }finally {
+                dict.close();
+            }
+
+            if(!tmpFile.renameTo(dictFile)){
+                throw new IOException("Could not commit index segment: "+dictFile);
+            }
+
+            return new Segment(number, postFile, terms.toArray(new String[0]), offsets, counts.toArray());
+        }
+    }
+
+
+}
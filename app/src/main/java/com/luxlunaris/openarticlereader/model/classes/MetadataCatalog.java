@@ -0,0 +1,725 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.luxlunaris.openarticlereader.model.interfaces.Metadata;
+import com.luxlunaris.openarticlereader.model.services.FileIO;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores the tags of all of the Pages under a root directory in one place,
+ * instead of in a metadata file per Page.
+ *
+ * On disk it's a snapshot of all of the tags sorted by page id, followed by an
+ * append-only log of the changes made since the snapshot was written. Both are
+ * read sequentially into memory when the catalog is opened. Changes are applied
+ * in memory and appended to the log in batches (write-behind, like MetadataFile);
+ * once the log outgrows the snapshot, the two get compacted into a new snapshot.
+ *
+ * A record cut short by a crash (the last line, without its '\n') is cut off the log
+ * before it's replayed, so that it doesn't get applied, nor the next record appended to it.
+ *
+ * A Page is identified by its path relative to the root directory.
+ * The first time a catalog is opened, the legacy metadata files of all of the Pages
+ * under its root directory get imported in one pass, and removed. (A Page that shows
+ * up later with a legacy file, eg: restored from an old backup, gets its file
+ * imported when it's first asked for).
+ */
+public class MetadataCatalog {
+
+    /**
+     * Name of the legacy per-page metadata files.
+     */
+    public static final String LEGACY_FILE_NAME = "metadata";
+
+    /**
+     * The directory (in the root directory) that contains the catalog.
+     */
+    private static final String DIR_NAME = "metadata_catalog";
+
+    /**
+     * The log never gets compacted while it has fewer records than this.
+     */
+    private static final int MIN_COMPACTION_RECORDS = 4096;
+
+    /**
+     * Kinds of records: a tag got set, a tag got removed,
+     * a page got dropped, a page got registered (with no tags yet).
+     */
+    private static final char SET = 'S';
+    private static final char REMOVE = 'R';
+    private static final char DROP = 'D';
+    private static final char PAGE = 'P';
+
+    /**
+     * Separates the fields of a record.
+     */
+    private static final char SEPARATOR = '\t';
+
+    /**
+     * The catalogs opened so far, by root directory.
+     */
+    private static final HashMap<String, MetadataCatalog> opened = new HashMap<>();
+
+    /**
+     * The catalog that new Pages store their tags in.
+     */
+    private static volatile MetadataCatalog defaultCatalog;
+
+    /**
+     * Appends the pending records to the logs in the background.
+     */
+    private static ScheduledExecutorService flusher;
+
+    /**
+     * The root directory that page ids are relative to.
+     */
+    private final String rootPath;
+
+    private final File snapshotFile;
+    private final File logFile;
+
+    /**
+     * Exists once the legacy metadata files under the root directory got imported.
+     */
+    private final File migratedFile;
+
+    /**
+     * The tags of each page, sorted by page id.
+     */
+    private final TreeMap<String, LinkedHashMap<String, String>> pages;
+
+    /**
+     * Records not yet appended to the log.
+     */
+    private final StringBuilder pending;
+
+    /**
+     * How many records the log (and the pending records) contain,
+     * and how many records a snapshot of the current tags would contain.
+     */
+    private int logRecords;
+    private int liveRecords;
+
+    /**
+     * Legacy metadata files to delete once their imported tags are in the log.
+     */
+    private final ArrayList<File> importedFiles;
+
+    /**
+     * When the first and the last pending records were added.
+     */
+    private long firstChange;
+    private long lastChange;
+
+
+    private MetadataCatalog(String rootPath){
+        this.rootPath = rootPath;
+        File dir = new File(rootPath+File.separator+DIR_NAME);
+        dir.mkdirs();
+        snapshotFile = new File(dir, "snapshot");
+        logFile = new File(dir, "log");
+        migratedFile = new File(dir, "migrated");
+        pages = new TreeMap<>();
+        pending = new StringBuilder();
+        importedFiles = new ArrayList<>();
+
+        replay(snapshotFile);
+        logRecords = replay(logFile);
+
+        if(!migratedFile.exists()){
+            importLegacyFiles(new File(rootPath));
+            flush();
+            FileIO.write(migratedFile.getPath(), "");
+        }
+    }
+
+    /**
+     * Get the catalog of the Pages under a root directory,
+     * loading it if it isn't loaded yet.
+     * @param rootPath
+     * @return
+     */
+    public static MetadataCatalog open(String rootPath){
+        synchronized (opened){
+            MetadataCatalog catalog = opened.get(rootPath);
+            if(catalog==null){
+                catalog = new MetadataCatalog(rootPath);
+                opened.put(rootPath, catalog);
+            }
+            return catalog;
+        }
+    }
+
+    /**
+     * Set the catalog that new Pages store their tags in.
+     * @param catalog
+     */
+    public static void setDefault(MetadataCatalog catalog){
+        defaultCatalog = catalog;
+    }
+
+    /**
+     * Get the Metadata of a Page: from the default catalog if there's one,
+     * else from the Page's own metadata file.
+     * @param pagePath
+     * @return
+     */
+    public static Metadata metadataOf(String pagePath){
+        MetadataCatalog catalog = defaultCatalog;
+        if(catalog==null){
+            return new MetadataFile(pagePath+File.separator+LEGACY_FILE_NAME);
+        }
+        return catalog.forPage(pagePath);
+    }
+
+    /**
+     * Write the pending changes of all of the opened catalogs right away.
+     */
+    public static void flushAll(){
+        ArrayList<MetadataCatalog> catalogs;
+        synchronized (opened){
+            catalogs = new ArrayList<>(opened.values());
+        }
+        for(MetadataCatalog catalog : catalogs){
+            catalog.flush();
+        }
+    }
+
+    /**
+     * Get the Metadata of a Page in this catalog,
+     * importing its legacy metadata file the first time.
+     * @param pagePath
+     * @return
+     */
+    public synchronized CatalogMetadata forPage(String pagePath){
+        String pageId = toId(pagePath);
+        if(!pages.containsKey(pageId)){
+            importLegacyFile(pageId, pagePath);
+        }
+        return new CatalogMetadata(rootPath, pageId);
+    }
+
+    /**
+     * Get the value of a tag of a page, null if not found.
+     * @param pageId
+     * @param key
+     * @return
+     */
+    public synchronized String get(String pageId, String key){
+        LinkedHashMap<String, String> tags = pages.get(pageId);
+        return tags==null? null : tags.get(key);
+    }
+
+    /**
+     * Set the value of a tag of a page.
+     * @param pageId
+     * @param key
+     * @param value
+     */
+    public synchronized void set(String pageId, String key, String value){
+        if(value==null){
+            remove(pageId, key);
+            return;
+        }
+        if(value.equals(applySet(pageId, key, value))){
+            return;
+        }
+        record(SET, pageId, key, value);
+    }
+
+    /**
+     * Remove a tag of a page.
+     * @param pageId
+     * @param key
+     */
+    public synchronized void remove(String pageId, String key){
+        if(applyRemove(pageId, key)!=null){
+            record(REMOVE, pageId, key);
+        }
+    }
+
+    /**
+     * Get the names of the tags of a page.
+     * @param pageId
+     * @return
+     */
+    public synchronized String[] getTagNames(String pageId){
+        LinkedHashMap<String, String> tags = pages.get(pageId);
+        return tags==null? new String[0] : tags.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Empty the tags of a (newly created) page.
+     * @param pageId
+     */
+    public synchronized void reset(String pageId){
+        applyDrop(pageId);
+        applyPage(pageId);
+        record(DROP, pageId);
+        record(PAGE, pageId);
+    }
+
+    /**
+     * Forget a page and its sub-pages.
+     * @param pageId
+     */
+    public synchronized void drop(String pageId){
+        ArrayList<String> dropped = new ArrayList<>();
+        if(pages.containsKey(pageId)){
+            dropped.add(pageId);
+        }
+        //the ids of the sub-pages are those between "id/" and "id0" ('0' follows '/')
+        dropped.addAll(pages.subMap(pageId+"/", pageId+"0").keySet());
+
+        for(String id : dropped){
+            applyDrop(id);
+            record(DROP, id);
+        }
+    }
+
+    /**
+     * Write a legacy metadata file for each page in a directory (and for its sub-pages),
+     * eg: to make a backup of the directory readable by older versions.
+     * @param dirPath
+     * @return the written files.
+     */
+    public List<File> exportLegacyFiles(String dirPath){
+
+        TreeMap<String, LinkedHashMap<String, String>> exported = new TreeMap<>();
+        String dirId = toId(dirPath);
+        synchronized (this){
+            for(Map.Entry<String, LinkedHashMap<String, String>> page : pages.subMap(dirId+"/", dirId+"0").entrySet()){
+                exported.put(page.getKey(), new LinkedHashMap<>(page.getValue()));
+            }
+        }
+
+        ArrayList<File> files = new ArrayList<>();
+        for(Map.Entry<String, LinkedHashMap<String, String>> page : exported.entrySet()){
+            File pageDir = new File(toPath(page.getKey()));
+            if(!pageDir.isDirectory()){
+                continue;
+            }
+            File file = new File(pageDir, LEGACY_FILE_NAME);
+            FileIO.write(file.getPath(), MetadataFile.formatTags(page.getValue()));
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Append the pending records to the log right away,
+     * compacting the log if it has grown too large.
+     */
+    public synchronized void flush(){
+
+        firstChange = 0;
+
+        if(pending.length()==0){
+            return;
+        }
+
+        FileIO.append(logFile.getPath(), pending.toString());
+        pending.setLength(0);
+
+        //the catalog is now where the imported tags live
+        for(File file : importedFiles){
+            file.delete();
+        }
+        importedFiles.clear();
+
+        if(logRecords>=MIN_COMPACTION_RECORDS && logRecords>liveRecords){
+            compact();
+        }
+    }
+
+    /**
+     * Write all of the current tags as a new snapshot, and empty the log.
+     */
+    private void compact(){
+
+        File tmp = new File(snapshotFile.getPath()+".tmp");
+
+        try(Writer writer = new FileWriter(tmp)){
+            StringBuilder line = new StringBuilder();
+            for(Map.Entry<String, LinkedHashMap<String, String>> page : pages.entrySet()){
+                line.setLength(0);
+                appendRecord(line, PAGE, page.getKey());
+                for(Map.Entry<String, String> tag : page.getValue().entrySet()){
+                    appendRecord(line, SET, page.getKey(), tag.getKey(), tag.getValue());
+                }
+                writer.write(line.toString());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return;
+        }
+
+        //replaying the old log over the new snapshot is harmless if we crash in between
+        if(!tmp.renameTo(snapshotFile)){
+            tmp.delete();
+            return;
+        }
+        FileIO.write(logFile.getPath(), "");
+        logRecords = 0;
+    }
+
+    /**
+     * Import the legacy metadata files of the pages in a directory (and of their sub-pages).
+     * @param dir
+     */
+    private void importLegacyFiles(File dir){
+
+        File[] children = dir.listFiles();
+        if(children==null){
+            return;
+        }
+
+        for(File child : children){
+            if(!child.isDirectory() || child.getName().equals(DIR_NAME)){
+                continue;
+            }
+            String pageId = toId(child.getPath());
+            if(!pages.containsKey(pageId) && new File(child, LEGACY_FILE_NAME).exists()){
+                importLegacyFile(pageId, child.getPath());
+            }
+            importLegacyFiles(child);
+        }
+    }
+
+    /**
+     * Import the tags of a page's legacy metadata file.
+     * @param pageId
+     * @param pagePath
+     */
+    private void importLegacyFile(String pageId, String pagePath){
+
+        //the page doesn't exist (yet): it gets registered when it gets created
+        if(!new File(pagePath).isDirectory()){
+            return;
+        }
+
+        applyPage(pageId);
+        record(PAGE, pageId);
+
+        File legacyFile = new File(pagePath, LEGACY_FILE_NAME);
+        if(!legacyFile.exists()){
+            return;
+        }
+
+        for(Map.Entry<String, String> tag : MetadataFile.parseTags(FileIO.read(legacyFile.getPath())).entrySet()){
+            applySet(pageId, tag.getKey(), tag.getValue());
+            record(SET, pageId, tag.getKey(), tag.getValue());
+        }
+
+        importedFiles.add(legacyFile);
+        MetadataFile.forgetAll(pagePath);
+    }
+
+    /**
+     * Apply the records in a file.
+     * @param file
+     * @return the number of records.
+     */
+    private int replay(File file){
+
+        if(!file.exists()){
+            return 0;
+        }
+
+        truncateTornRecord(file);
+        int records = 0;
+
+        try(BufferedReader reader = new BufferedReader(new FileReader(file))){
+            String line;
+            while((line=reader.readLine())!=null){
+                if(apply(line)){
+                    records++;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return records;
+    }
+
+    /**
+     * Apply a record.
+     * @param line
+     * @return false if the record is malformed (eg: cut short by a crash).
+     */
+    private boolean apply(String line){
+
+        String[] fields = split(line);
+        if(fields==null || fields.length<2 || fields[0].length()!=1){
+            return false;
+        }
+
+        switch (fields[0].charAt(0)){
+            case SET:
+                if(fields.length!=4){
+                    return false;
+                }
+                applySet(fields[1], fields[2], fields[3]);
+                return true;
+            case REMOVE:
+                if(fields.length!=3){
+                    return false;
+                }
+                applyRemove(fields[1], fields[2]);
+                return true;
+            case DROP:
+                if(fields.length!=2){
+                    return false;
+                }
+                applyDrop(fields[1]);
+                return true;
+            case PAGE:
+                if(fields.length!=2){
+                    return false;
+                }
+                applyPage(fields[1]);
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the previous value.
+     */
+    private String applySet(String pageId, String key, String value){
+        String previous = applyPage(pageId).put(key, value);
+        if(previous==null){
+            liveRecords++;
+        }
+        return previous;
+    }
+
+    /**
+     * @return the removed value.
+     */
+    private String applyRemove(String pageId, String key){
+        LinkedHashMap<String, String> tags = pages.get(pageId);
+        String removed = tags==null? null : tags.remove(key);
+        if(removed!=null){
+            liveRecords--;
+        }
+        return removed;
+    }
+
+    private void applyDrop(String pageId){
+        LinkedHashMap<String, String> tags = pages.remove(pageId);
+        if(tags!=null){
+            liveRecords -= 1+tags.size();
+        }
+    }
+
+    /**
+     * @return the tags of the page, registering it if needed.
+     */
+    private LinkedHashMap<String, String> applyPage(String pageId){
+        LinkedHashMap<String, String> tags = pages.get(pageId);
+        if(tags==null){
+            tags = new LinkedHashMap<>();
+            pages.put(pageId, tags);
+            liveRecords++;
+        }
+        return tags;
+    }
+
+    /**
+     * Add a record to the pending ones, and make sure a flush is scheduled.
+     * @param fields
+     */
+    private void record(char type, String... fields){
+
+        appendRecord(pending, type, fields);
+        logRecords++;
+
+        long now = System.currentTimeMillis();
+        lastChange = now;
+        if(firstChange<=0){
+            firstChange = now;
+            scheduleFlush(MetadataFile.FLUSH_DELAY);
+        }
+    }
+
+    /**
+     * Flush this catalog after a delay, unless it keeps changing.
+     * @param delay
+     */
+    private void scheduleFlush(long delay){
+
+        getFlusher().schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (MetadataCatalog.this){
+                    if(firstChange<=0){
+                        //flushed in the meantime
+                        return;
+                    }
+                    long now = System.currentTimeMillis();
+                    long wait = Math.min(lastChange+MetadataFile.FLUSH_DELAY, firstChange+MetadataFile.MAX_FLUSH_DELAY) - now;
+                    if(wait>0){
+                        scheduleFlush(wait);
+                    }else{
+                        flush();
+                    }
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the (daemon) thread that flushes the catalogs.
+     * @return
+     */
+    private static synchronized ScheduledExecutorService getFlusher(){
+        if(flusher==null){
+            flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "MetadataCatalog-flusher");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return flusher;
+    }
+
+    /**
+     * Get the id of a page from its path.
+     * @param pagePath
+     * @return
+     */
+    private String toId(String pagePath){
+        String prefix = rootPath+File.separator;
+        return pagePath.startsWith(prefix)? pagePath.substring(prefix.length()) : pagePath;
+    }
+
+    /**
+     * Get the path of a page from its id.
+     * @param pageId
+     * @return
+     */
+    private String toPath(String pageId){
+        return new File(pageId).isAbsolute()? pageId : rootPath+File.separator+pageId;
+    }
+
+    /**
+     * Append a record as a line of escaped, separated fields.
+     * (Also used by the other journals of this package).
+     * @param out
+     * @param type
+     * @param fields
+     */
+    static void appendRecord(StringBuilder out, char type, String... fields){
+        out.append(type);
+        for(String field : fields){
+            out.append(SEPARATOR);
+            for(int i=0; i<field.length(); i++){
+                char c = field.charAt(i);
+                switch (c){
+                    case '\\': out.append("\\\\"); break;
+                    case '\t': out.append("\\t"); break;
+                    case '\n': out.append("\\n"); break;
+                    case '\r': out.append("\\r"); break;
+                    default: out.append(c);
+                }
+            }
+        }
+        out.append('\n');
+    }
+
+    /**
+     * Cut the last record off a log if it's incomplete (doesn't end with '\n'),
+     * eg: the app got killed while appending it.
+     * (Also used by the other journals of this package).
+     * @param file
+     */
+    static void truncateTornRecord(File file){
+
+        try(RandomAccessFile log = new RandomAccessFile(file, "rw")){
+
+            long length = log.length();
+            byte[] buffer = new byte[4096];
+
+            //look for the end of the last complete record, backwards
+            long end = length;
+            while(end>0){
+                int size = (int) Math.min(buffer.length, end);
+                log.seek(end-size);
+                log.readFully(buffer, 0, size);
+                for(int i=size-1; i>=0; i--){
+                    if(buffer[i]=='\n'){
+                        long complete = end-size+i+1;
+                        if(complete<length){
+                            log.setLength(complete);
+                        }
+                        return;
+                    }
+                }
+                end -= size;
+            }
+
+            //not even one complete record
+            log.setLength(0);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Split a record into its unescaped fields.
+     * @param line
+     * @return null if it has a bad escape (eg: cut short after a backslash).
+     */
+    static String[] split(String line){
+        ArrayList<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        for(int i=0; i<line.length(); i++){
+            char c = line.charAt(i);
+            if(c==SEPARATOR){
+                fields.add(field.toString());
+                field.setLength(0);
+            }else if(c=='\\'){
+                if(i+1==line.length()){
+                    return null;
+                }
+                switch (line.charAt(++i)){
+                    case '\\': field.append('\\'); break;
+                    case 't': field.append('\t'); break;
+                    case 'n': field.append('\n'); break;
+                    case 'r': field.append('\r'); break;
+                    default: return null;
+                }
+            }else{
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+
+}
@@ -6,25 +6,86 @@ import com.luxlunaris.openarticlereader.model.services.FileIO;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 
+/**
+ * Stores tags as "key : value" lines in a file.
+ *
+ * The file is parsed once (lazily) into memory, and the parsed tags are shared
+ * by all of the MetadataFile objects with the same path (Pages get copied around).
+ * Changes are applied in memory, and written to disk later (write-behind):
+ * a dirty file gets flushed once it stops changing for FLUSH_DELAY ms
+ * (or at most after MAX_FLUSH_DELAY ms), or explicitly through flush().
+ */
 public class MetadataFile extends File implements Metadata {
 
+	/**
+	 * Changes get written after the file stops changing for this long (ms).
+	 */
+	public static final long FLUSH_DELAY = 1000;
+
+	/**
+	 * Changes never wait longer than this (ms) to be written.
+	 */
+	public static final long MAX_FLUSH_DELAY = 5000;
+
+	/**
+	 * The parsed contents of the MetadataFiles loaded so far, by path.
+	 */
+	private static final HashMap<String, Contents> loaded = new HashMap<>();
+
+	/**
+	 * Writes dirty MetadataFiles in the background.
+	 */
+	private static ScheduledExecutorService flusher;
+
 	
 	public MetadataFile(String pathname) {
 		super(pathname);	
 	}
 	
 	
+	@Override
 	public void create() {
 		try {
-			this.createNewFile();
+			//a brand new file doesn't have the tags of an older one with the same path
+			if(this.createNewFile()){
+				synchronized (loaded){
+					loaded.put(getPath(), new Contents());
+				}
+			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
+
+
+	/**
+	 * Get the parsed contents of this file, parsing it if needed.
+	 * @return
+	 */
+	private Contents getContents(){
+		synchronized (loaded){
+			Contents contents = loaded.get(getPath());
+			if(contents==null){
+				contents = new Contents();
+				if(exists()){
+					contents.parse(FileIO.read(getPath()));
+				}
+				loaded.put(getPath(), contents);
+			}
+			return contents;
+		}
+	}
 	
 	
 	/**
@@ -37,52 +98,28 @@ public class MetadataFile extends File implements Metadata {
 	@Override
 	public void setTagValue(String key, String value) {
 
-		//get the old value of the key
-		String oldValue = getString(key);
-		
-		//get this file's text
-		String text = FileIO.read(this.getPath());
-		
-		//if it's the first time you're putting this key in, add a new key-value line
-		if(oldValue==null) {
-			text+=key+" : "+value+"\n";
-		}else {
-			//else replace oldValue with new value
-			text = text.replace(key+" : "+oldValue, key+" : "+value);
+		Contents contents = getContents();
+
+		synchronized (contents){
+			contents.tags.put(key, value);
+			markDirty(contents);
 		}
-		
-		//push changes
-		FileIO.write(this.getPath(), text);
-		
+
 	}
 	
 	
 	
 	/**
 	 * Returns the value associated to a key, null if not found.
-	 * In case the value is a referenced file, it returns 
-	 * the contents of that referenced file.
 	 * @param key
 	 * @return
 	 */
 	@Override
 	public String getString(String key) {
-		//get this file's text
-		String text = FileIO.read(this.getPath());
-		String value = null;
-		try {
-			//try matching the pattern: key : value\n 
-			Pattern pattern = Pattern.compile(key+" : (.*?)\n");
-			
-			Matcher matcher = pattern.matcher(text);
-			matcher.find();
-			
-			//get the value
-			value = matcher.group(1);
-			
-		}catch(Exception e) {/*do nothing*/}
-		
-		return value;
+		Contents contents = getContents();
+		synchronized (contents){
+			return contents.tags.get(key);
+		}
 	}
 
 
@@ -94,9 +131,49 @@ public class MetadataFile extends File implements Metadata {
 	 */
 	@Override
 	public int getInt(String tagName) throws WrongTagTypeException {
+		return toInt(tagName, getString(tagName));
+	}
+
+
+	/**
+	 * Get the value of a tag that stores a boolean
+	 * @param tagName
+	 * @return
+	 * @throws WrongTagTypeException
+	 */
+	@Override
+	public boolean getBoolean(String tagName) throws WrongTagTypeException {
+		return toBoolean(tagName, getString(tagName));
+	}
+
+	/**
+	 * Get the value of a tag that stores a floating point number.
+	 * @param tagName
+	 * @return
+	 * @throws WrongTagTypeException
+	 */
+	@Override
+	public double getFloat(String tagName) throws WrongTagTypeException {
+		return toFloat(tagName, getString(tagName));
+	}
+
+	@Override
+	public long getLong(String tagName) throws WrongTagTypeException {
+		return toLong(tagName, getString(tagName));
+	}
+
+
+	/**
+	 * Parse the value of a tag that stores an integer.
+	 * @param tagName
+	 * @param value
+	 * @return
+	 * @throws WrongTagTypeException
+	 */
+	static int toInt(String tagName, String value) throws WrongTagTypeException {
 
 		try{
-			int parsedInt = Integer.parseInt(getString(tagName).trim());
+			int parsedInt = Integer.parseInt(value.trim());
 			return parsedInt;
 		}catch(NumberFormatException | NullPointerException e) {
 			throw new WrongTagTypeException(tagName+" is not an int!");
@@ -106,15 +183,13 @@ public class MetadataFile extends File implements Metadata {
 
 
 	/**
-	 * Get the value of a tag that stores a boolean
+	 * Parse the value of a tag that stores a boolean.
 	 * @param tagName
+	 * @param boolString
 	 * @return
 	 * @throws WrongTagTypeException
 	 */
-	@Override
-	public boolean getBoolean(String tagName) throws WrongTagTypeException {
-
-		String boolString = getString(tagName);
+	static boolean toBoolean(String tagName, String boolString) throws WrongTagTypeException {
 
 		if(boolString==null){
 			throw  new WrongTagTypeException(tagName+" is not a boolean! It's null!");
@@ -134,15 +209,15 @@ public class MetadataFile extends File implements Metadata {
 	}
 
 	/**
-	 * Get the value of a tag that stores a floating point number.
+	 * Parse the value of a tag that stores a floating point number.
 	 * @param tagName
+	 * @param value
 	 * @return
 	 * @throws WrongTagTypeException
 	 */
-	@Override
-	public double getFloat(String tagName) throws WrongTagTypeException {
+	static double toFloat(String tagName, String value) throws WrongTagTypeException {
 		try{
-			double parsedDouble = Double.parseDouble(getString(tagName).trim());
+			double parsedDouble = Double.parseDouble(value.trim());
 			return parsedDouble;
 		}catch (NumberFormatException e){
 			throw new WrongTagTypeException(tagName+" is not a number!");
@@ -150,10 +225,16 @@ public class MetadataFile extends File implements Metadata {
 
 	}
 
-	@Override
-	public long getLong(String tagName) throws WrongTagTypeException {
+	/**
+	 * Parse the value of a tag that stores a long.
+	 * @param tagName
+	 * @param value
+	 * @return
+	 * @throws WrongTagTypeException
+	 */
+	static long toLong(String tagName, String value) throws WrongTagTypeException {
 		try {
-			long parsedLong = Long.parseLong(getString(tagName).trim());
+			long parsedLong = Long.parseLong(value.trim());
 			return parsedLong;
 		}catch(NullPointerException e){
 			//tag doesn't exists
@@ -172,17 +253,239 @@ public class MetadataFile extends File implements Metadata {
 	 */
 	@Override
 	public void removeTag(String key) {
-		String value = getString(key);
-		if(value==null) {
-			return; //no key to remove
+
+		Contents contents = getContents();
+
+		synchronized (contents){
+			if(contents.tags.remove(key)!=null){
+				markDirty(contents);
+			}
 		}
-		String newText = FileIO.read(this.getPath()).replace(key+" : "+value+"\n", "");
-		FileIO.write(this.getPath(), newText);
 		
 	}
 
 
+	/**
+	 * Get the names of all of the tags.
+	 * @return
+	 */
+	@Override
+	public String[] getTagNames() {
+		Contents contents = getContents();
+		synchronized (contents){
+			return contents.tags.keySet().toArray(new String[0]);
+		}
+	}
+
+
+	/**
+	 * Forget the tags of the page that contains this file,
+	 * and those of its sub-pages, when the page gets deleted.
+	 */
+	@Override
+	public void discard() {
+		if(getParent()!=null){
+			forgetAll(getParent());
+		}
+	}
+
+
+	/**
+	 * Write any pending changes to disk right away.
+	 */
+	@Override
+	public void flush() {
+
+		Contents contents = getContents();
+
+		synchronized (contents){
+
+			if(!contents.dirty){
+				return;
+			}
+
+			//the page may have been deleted in the meantime
+			if(getParentFile()!=null && !getParentFile().exists()){
+				contents.dirty = false;
+				return;
+			}
+
+			FileIO.write(getPath(), contents.toString());
+			contents.dirty = false;
+		}
+	}
+
 
+	/**
+	 * Mark the contents as changed, and make sure a flush is scheduled.
+	 * @param contents
+	 */
+	private void markDirty(Contents contents){
+
+		long now = System.currentTimeMillis();
+		contents.lastChange = now;
+
+		if(contents.dirty){
+			return;
+		}
+
+		contents.dirty = true;
+		contents.firstChange = now;
+		scheduleFlush(FLUSH_DELAY);
+	}
+
+
+	/**
+	 * Flush this file after a delay, unless it keeps changing.
+	 * @param delay
+	 */
+	private void scheduleFlush(long delay){
+
+		getFlusher().schedule(new Runnable() {
+			@Override
+			public void run() {
+
+				Contents contents = getContents();
+				long wait;
+
+				synchronized (contents){
+					if(!contents.dirty){
+						return;
+					}
+					long now = System.currentTimeMillis();
+					wait = Math.min(contents.lastChange+FLUSH_DELAY, contents.firstChange+MAX_FLUSH_DELAY) - now;
+				}
+
+				if(wait>0){
+					scheduleFlush(wait);
+				}else{
+					flush();
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+
+	/**
+	 * Get the (daemon) thread that flushes the MetadataFiles.
+	 * @return
+	 */
+	private static synchronized ScheduledExecutorService getFlusher(){
+		if(flusher==null){
+			flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "MetadataFile-flusher");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return flusher;
+	}
+
+
+	/**
+	 * Write the pending changes of all of the MetadataFiles to disk right away.
+	 */
+	public static void flushAll(){
+		ArrayList<String> paths;
+		synchronized (loaded){
+			paths = new ArrayList<>(loaded.keySet());
+		}
+		for(String path : paths){
+			new MetadataFile(path).flush();
+		}
+	}
+
+
+	/**
+	 * Forget the (possibly pending) contents of all of the MetadataFiles in
+	 * a directory, when that directory gets deleted.
+	 * @param dirPath
+	 */
+	public static void forgetAll(String dirPath){
+		String prefix = dirPath+File.separator;
+		synchronized (loaded){
+			Iterator<String> iterator = loaded.keySet().iterator();
+			while(iterator.hasNext()){
+				if(iterator.next().startsWith(prefix)){
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * The parsed tags of a file, and their write-behind state.
+	 */
+	private static class Contents {
+
+		final LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+
+		/**
+		 * True if the tags changed since they were last written.
+		 */
+		boolean dirty = false;
+
+		/**
+		 * When the tags first changed since the last write, and when they last changed.
+		 */
+		long firstChange;
+		long lastChange;
+
+		/**
+		 * Parse the "key : value" lines of a file.
+		 * @param text
+		 */
+		void parse(String text){
+			tags.putAll(parseTags(text));
+		}
+
+		@Override
+		public String toString(){
+			return formatTags(tags);
+		}
+	}
+
+
+	/**
+	 * Parse the "key : value" lines of a file.
+	 * @param text
+	 * @return
+	 */
+	static LinkedHashMap<String, String> parseTags(String text){
+		LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+		if(text==null){
+			return tags;
+		}
+		for(String line : text.split("\n")){
+			int sep = line.indexOf(" : ");
+			if(sep>=0){
+				String key = line.substring(0, sep);
+				//the first occurrence of a key wins
+				if(!tags.containsKey(key)){
+					tags.put(key, line.substring(sep+3));
+				}
+			}
+		}
+		return tags;
+	}
+
+
+	/**
+	 * Serialize tags as "key : value" lines.
+	 * @param tags
+	 * @return
+	 */
+	static String formatTags(Map<String, String> tags){
+		StringBuilder text = new StringBuilder();
+		for(Map.Entry<String, String> tag : tags.entrySet()){
+			text.append(tag.getKey()).append(" : ").append(tag.getValue()).append('\n');
+		}
+		return text.toString();
+	}
 
 
 	
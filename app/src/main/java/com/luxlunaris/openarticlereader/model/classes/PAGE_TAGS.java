@@ -4,6 +4,8 @@ public class PAGE_TAGS {
 
     public static final String SOURCE_URL = "SOURCE_URL";
 
+    public static final String REQUESTED_URL = "REQUESTED_URL";
+
     public static final String IN_RECYCLE_BIN = "RECYCLE_BIN";
 
     public static final String EDITABLE = "EDITABLE";
@@ -0,0 +1,264 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A compact summary of all of the Pages of a notebook, kept in a single file,
+ * so that the notebook can be listed at startup without touching the pages' directories.
+ *
+ * Each entry has a page's id (its directory's name), whether it's in the recycle bin,
+ * its last-modified and creation times, and its preview (if short enough).
+ * The entries are written newest first, so they're read back already sorted.
+ *
+ * The manifest is only a cache: whoever uses it should reconcile it
+ * with the actual directories from time to time.
+ */
+public class PageManifest {
+
+    /**
+     * Identifies (the version of) the file's format.
+     */
+    private static final int MAGIC = 0x504D0001;
+
+    /**
+     * Longer previews aren't stored.
+     */
+    public static final int MAX_PREVIEW_LENGTH = 1000;
+
+    /**
+     * Changes get written after the manifest stops changing for this long (ms).
+     */
+    private static final long SAVE_DELAY = 2000;
+
+    /**
+     * Writes the manifests in the background.
+     */
+    private static ScheduledExecutorService saver;
+
+    private final File file;
+
+    /**
+     * The entries, by key (see key()).
+     */
+    private final HashMap<String, Entry> entries;
+
+    /**
+     * True if a save is scheduled.
+     */
+    private boolean saveScheduled;
+
+
+    public PageManifest(String path){
+        file = new File(path);
+        entries = new HashMap<>();
+        load();
+    }
+
+    /**
+     * True if the manifest has no entries (eg: it doesn't exist yet).
+     * @return
+     */
+    public synchronized boolean isEmpty(){
+        return entries.isEmpty();
+    }
+
+    /**
+     * Get the entries, newest first.
+     * @return
+     */
+    public synchronized List<Entry> getEntries(){
+        ArrayList<Entry> sorted = new ArrayList<>(entries.values());
+        Collections.sort(sorted, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry e1, Entry e2) {
+                if(e1.lastModified!=e2.lastModified){
+                    return e1.lastModified>e2.lastModified? -1 : 1;
+                }
+                return e2.id.compareTo(e1.id);
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * Get the entry of a page.
+     * @param id
+     * @param inRecycleBin
+     * @return null if not found.
+     */
+    public synchronized Entry get(String id, boolean inRecycleBin){
+        return entries.get(key(id, inRecycleBin));
+    }
+
+    /**
+     * Add or replace the entry of a page.
+     * @param entry
+     */
+    public synchronized void put(Entry entry){
+        entries.put(key(entry.id, entry.inRecycleBin), entry);
+        scheduleSave();
+    }
+
+    /**
+     * Remove the entry of a page.
+     * @param id
+     * @param inRecycleBin
+     */
+    public synchronized void remove(String id, boolean inRecycleBin){
+        if(entries.remove(key(id, inRecycleBin))!=null){
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Read the entries from the file.
+     * A missing or corrupted file yields no entries.
+     */
+    private void load(){
+
+        if(!file.exists()){
+            return;
+        }
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+
+            if(in.readInt()!=MAGIC){
+                return;
+            }
+
+            int count = in.readInt();
+            for(int i=0; i<count; i++){
+                String id = in.readUTF();
+                boolean inRecycleBin = in.readBoolean();
+                long lastModified = in.readLong();
+                long creationTime = in.readLong();
+                String preview = in.readBoolean()? in.readUTF() : null;
+                entries.put(key(id, inRecycleBin), new Entry(id, inRecycleBin, lastModified, creationTime, preview));
+            }
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            entries.clear();
+        }
+    }
+
+    /**
+     * Write the entries to the file right away.
+     */
+    public void save(){
+
+        List<Entry> sorted;
+        synchronized (this){
+            saveScheduled = false;
+            sorted = getEntries();
+        }
+
+        File tmp = new File(file.getPath()+".tmp");
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))){
+            out.writeInt(MAGIC);
+            out.writeInt(sorted.size());
+            for(Entry entry : sorted){
+                out.writeUTF(entry.id);
+                out.writeBoolean(entry.inRecycleBin);
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.creationTime);
+                out.writeBoolean(entry.preview!=null);
+                if(entry.preview!=null){
+                    out.writeUTF(entry.preview);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return;
+        }
+
+        if(!tmp.renameTo(file)){
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Save the manifest in a little while, letting more changes pile up.
+     */
+    private void scheduleSave(){
+
+        if(saveScheduled){
+            return;
+        }
+        saveScheduled = true;
+
+        getSaver().schedule(new Runnable() {
+            @Override
+            public void run() {
+                save();
+            }
+        }, SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the (daemon) thread that saves the manifests.
+     * @return
+     */
+    private static synchronized ScheduledExecutorService getSaver(){
+        if(saver==null){
+            saver = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "PageManifest-saver");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return saver;
+    }
+
+    private static String key(String id, boolean inRecycleBin){
+        return (inRecycleBin? "-" : "+")+id;
+    }
+
+
+    /**
+     * The summary of a page.
+     */
+    public static class Entry {
+
+        public final String id;
+        public final boolean inRecycleBin;
+        public final long lastModified;
+        public final long creationTime;
+
+        /**
+         * null if unknown or too long.
+         */
+        public final String preview;
+
+        public Entry(String id, boolean inRecycleBin, long lastModified, long creationTime, String preview){
+            this.id = id;
+            this.inRecycleBin = inRecycleBin;
+            this.lastModified = lastModified;
+            this.creationTime = creationTime;
+            this.preview = preview==null || preview.length()>MAX_PREVIEW_LENGTH? null : preview;
+        }
+    }
+
+
+}
@@ -1,19 +1,22 @@
 package com.luxlunaris.openarticlereader.model.classes;
 
 import com.luxlunaris.openarticlereader.control.interfaces.PageListener;
+
 import com.luxlunaris.openarticlereader.model.services.FileIO;
 
-import org.jsoup.Connection;
 import org.jsoup.nodes.Document;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.util.ArrayList;
+import java.util.List;
 
-public class ReadOnlyPage extends AbstractPage{
+public class ReadOnlyPage extends AbstractPage implements WebsiteData.ImageListener{
 
     transient Document doc;
-    transient ArrayList<Connection.Response> images;
+
+    /**
+     * The download this page is made from (its images may still be arriving).
+     */
+    transient WebsiteData data;
 
 
     public final String TAG_URL = "TAG_URL";
@@ -23,8 +26,8 @@ public class ReadOnlyPage extends AbstractPage{
     }
 
     public void initContent(WebsiteData data){
+        this.data = data;
         doc = data.doc;
-        images = data.images;
     }
 
 
@@ -32,55 +35,100 @@ public class ReadOnlyPage extends AbstractPage{
     public void create() {
         super.create();
 
-        if(doc==null || images==null){
+        if(doc==null){
             setEditable(false);
             return;
         }
 
+        //collect all of the changes, write each file once
+        beginEdit();
 
-        setTag(PAGE_TAGS.SOURCE_URL, doc.location());
-        setTag(PAGE_TAGS.CREATION_TIME, System.currentTimeMillis()+"");
+        try{
 
+            setTag(PAGE_TAGS.SOURCE_URL, doc.location());
+            //(if it got redirected)
+            if(data.url!=null && !data.url.equals(doc.location())){
+                setTag(PAGE_TAGS.REQUESTED_URL, data.url);
+            }
+            setTag(PAGE_TAGS.CREATION_TIME, System.currentTimeMillis()+"");
 
+            StringBuilder content = new StringBuilder();
+            content.append("<b>").append(doc.title()).append("</b>").append("<p>\n\n</p>");
+            for(String paragraph : doc.text().split("\\. ")){
+                content.append("<p>").append(paragraph).append(".</p>");
+            }
 
+            setSource(content.toString());
+            setEditable(false);
 
-        String content = doc.text();
-        String buffer = "";
-        for(String paragraph : content.split("\\. ")){
-            buffer += "<p>"+paragraph+".</p>";
+        }finally {
+            commitEdit();
         }
-        content = buffer;
-        content = "<b>" + doc.title()+"</b>" +"<p>\n\n</p>"+ content ;
-        setSource(content);
+    }
 
-        for (Connection.Response img : images) {
-            addImage(img);
+    /**
+     * Start adding the images of the download at the end of this Page
+     * as they arrive (see onImagesReady()).
+     */
+    public void receiveImages(){
+        if(data!=null){
+            data.setImageListener(this);
         }
-
-        setEditable(false);
     }
 
-    protected void addImage(Connection.Response response){
+    /**
+     * Add the next images of the download, all in a single change.
+     * @param images
+     */
+    @Override
+    public void onImagesReady(List<File> images) {
+
+        beginEdit();
 
         try{
-            String pathname = imageDir.getPath() + File.separator + System.currentTimeMillis();
-            FileOutputStream out = new FileOutputStream(new File(pathname));
-            out.write(response.bodyAsBytes());
-            out.flush();
-            out.close();
-            String imageTag = generateImgTag(pathname);
-            String text = getSource();
-            text+=imageTag;
-            setSource(text);
-
-        }catch (Exception e){
-            e.printStackTrace();
+            for(File image : images){
+                addImage(image);
+            }
+        }finally {
+            commitEdit();
+        }
+    }
+
+    /**
+     * Add a downloaded image at the end of this Page.
+     * @param image the downloaded file (moved into this Page).
+     */
+    protected void addImage(File image){
+        String imageTag = saveImage(image);
+        if(imageTag!=null){
+            setSource(getSource()+imageTag);
+            notifyModified();
+        }
+    }
+
+    /**
+     * Move a downloaded image into this Page's imageDir
+     * (copy it if it can't be moved).
+     * @param image
+     * @return the image's tag, or null if it couldn't be saved.
+     */
+    protected String saveImage(File image){
+
+        File imageFile = newImageFile();
+
+        if(!image.renameTo(imageFile)){
+            FileIO.copyFile(image.getPath(), imageFile.getPath());
+            image.delete();
+            if(!imageFile.exists()){
+                return null;
+            }
         }
 
+        return generateImgTag(imageFile.getPath());
     }
 
     protected void setSource(String text){
-        FileIO.write(textFile.getPath(), text);
+        writeSource(text);
     }
 
     @Override
@@ -0,0 +1,427 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.luxlunaris.openarticlereader.model.exceptions.HttpStatusException;
+import com.luxlunaris.openarticlereader.model.exceptions.UnsupportedContentTypeException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Downloads the body of a url into a file, in a way that survives interruptions.
+ *
+ * The body is written to a ".part" file (named after the url) in a staging directory,
+ * next to a ".state" file with the response's validator (ETag or Last-Modified).
+ * If a transfer breaks off, the next transfer of the same url asks only for the
+ * missing bytes (Range), provided that the resource didn't change (If-Range);
+ * if the server can't resume (or the resource changed), it starts over.
+ *
+ * A whole body may come compressed (it's decoded as it arrives), but then
+ * it can't be resumed, as the bytes in the ".part" file don't match the
+ * server's offsets; the rest of a body is requested without content-encoding.
+ * So, as a whole body is asked for compressed, in practice the documents
+ * (that servers compress) start over when interrupted, and the images and
+ * other binary files (that servers send as they are) resume: for a document,
+ * the smaller transfer is worth more than being able to resume it.
+ */
+public class ResumableTransfer {
+
+    public static final String PART_EXTENSION = ".part";
+    public static final String STATE_EXTENSION = ".state";
+
+    /**
+     * The size of the buffer the body is streamed through.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The ".part" files being written right now.
+     */
+    private static final HashSet<String> claimed = new HashSet<>();
+
+    /**
+     * Makes the names of the complete files unique.
+     */
+    private static int completedCount = 0;
+
+    private final HttpClient client;
+    private final String url;
+    private final File dir;
+
+    /**
+     * Where the body is written while it's downloaded.
+     */
+    private final File part;
+
+    /**
+     * Keeps the validator of the ".part" file's content.
+     */
+    private final File state;
+
+    /**
+     * False if another transfer of the same url is using the shared ".part" file
+     * (then this one uses one of its own, that can't be resumed later).
+     */
+    private final boolean resumable;
+
+    /**
+     * The bytes of the budget (if any) held by run() right now.
+     */
+    private long reserved;
+
+    private int statusCode;
+    private String etag;
+    private String lastModified;
+    private String charset;
+    private String finalUrl;
+    private String cacheControl;
+
+
+    /**
+     * @param client
+     * @param url
+     * @param dir the staging directory.
+     */
+    public ResumableTransfer(HttpClient client, String url, File dir){
+        this.client = client;
+        this.url = url;
+        this.dir = dir;
+
+        String name = HttpCache.keyOf(url);
+        synchronized (claimed){
+            resumable = claimed.add(name);
+            if(!resumable){
+                name = name+"_"+(completedCount++);
+            }
+        }
+        part = new File(dir, name+PART_EXTENSION);
+        state = new File(dir, name+STATE_EXTENSION);
+    }
+
+    /**
+     * True if there's an interrupted transfer to resume.
+     * @return
+     */
+    public boolean isResuming(){
+        return resumable && part.exists() && part.length()>0 && readState()!=null;
+    }
+
+    /**
+     * Download the body (or the rest of it).
+     * If it's interrupted (IOException), what was received is kept for the next transfer.
+     * @param headers more request headers (eg: conditional ones, only sent if not resuming).
+     * @param ignoreContentType false to only accept text/html and the like.
+     * @param maxSize larger bodies are dropped.
+     * @param budget reserves the bytes still to be received while they are (null for none):
+     * before connecting, as many as the body could have (maxSize), then as many as it has.
+     * @return the complete file (renamed from the ".part"), or null if there's no body
+     * (eg: 304 Not Modified) or it's too large.
+     * @throws IOException if it failed (eg: connection lost, HTTP error).
+     * @throws InterruptedException if interrupted while waiting for the budget.
+     */
+    public File run(Map<String, String> headers, boolean ignoreContentType, long maxSize, ByteBudget budget) throws IOException, InterruptedException {
+
+        Properties resumeState = resumable && part.exists()? readState() : null;
+        long offset = resumeState==null? 0 : part.length();
+
+        HashMap<String, String> requestHeaders = new HashMap<>();
+        if(offset>0){
+            requestHeaders.put("Range", "bytes="+offset+"-");
+            requestHeaders.put("If-Range", resumeState.getProperty("validator"));
+        }else if(headers!=null){
+            requestHeaders.putAll(headers);
+        }
+
+        //wait for the budget before connecting, so that no connection is held meanwhile
+        reserved = budget==null? 0 : budget.acquire(Math.max(0, maxSize-offset));
+        try{
+            //the rest of a body is asked for as it is, to match the offsets
+            HttpClient.Response response = client.get(url, requestHeaders, offset==0);
+            try{
+                return receive(response, resumeState, offset, ignoreContentType, maxSize, budget);
+            }finally {
+                response.close();
+            }
+        }finally {
+            if(budget!=null){
+                budget.release(reserved);
+                reserved = 0;
+            }
+        }
+    }
+
+    private File receive(HttpClient.Response response, Properties resumeState, long offset, boolean ignoreContentType, long maxSize, ByteBudget budget) throws IOException {
+
+        statusCode = response.statusCode();
+        finalUrl = response.url();
+        cacheControl = response.header("Cache-Control");
+
+        boolean append = false;
+        if(statusCode==206 && offset>0 && startOf(response.header("Content-Range"))==offset){
+            //the rest of the same body
+            append = true;
+            etag = resumeState.getProperty("etag");
+            lastModified = resumeState.getProperty("lastModified");
+            charset = resumeState.getProperty("charset");
+        }else if(statusCode==416 && offset>0){
+            //nothing left to receive: the part is complete
+            etag = resumeState.getProperty("etag");
+            lastModified = resumeState.getProperty("lastModified");
+            charset = resumeState.getProperty("charset");
+            return complete();
+        }else if(statusCode==200){
+            //a whole (maybe changed) body: start over
+            etag = response.header("ETag");
+            lastModified = response.header("Last-Modified");
+            charset = response.charset();
+        }else if(statusCode==304){
+            discard();
+            return null;
+        }else if(statusCode==206){
+            //not the range that was asked for
+            discard();
+            throw new IOException("Unexpected range for "+url);
+        }else{
+            throw new HttpStatusException(statusCode, url);
+        }
+
+        //(the unwanted bodies aren't read: their connections get dropped)
+        String contentType = response.contentType();
+        if(!ignoreContentType && !isTextual(contentType)){
+            response.abort();
+            discard();
+            throw new UnsupportedContentTypeException(contentType, url);
+        }
+
+        //(what's left to receive)
+        long length = response.contentLength();
+        if(length>=0 && (append? offset : 0)+length>maxSize){
+            response.abort();
+            discard();
+            return null;
+        }
+
+        //give back the part of the budget that the body won't need
+        if(budget!=null && length>=0 && length<reserved){
+            budget.release(reserved-length);
+            reserved = length;
+        }
+
+        //remember how to resume it, before receiving anything
+        //(a decoded body can't be resumed: its offsets aren't the server's)
+        if(!append){
+            part.delete();
+            writeState(!response.isEncoded());
+        }
+
+        //(the body gets closed with the response)
+        long total = append? offset : 0;
+        boolean tooLarge = false;
+        InputStream in = response.body();
+        try(OutputStream out = new FileOutputStream(part, append)){
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while((read = in.read(buffer))!=-1){
+                total += read;
+                if(total>maxSize){
+                    tooLarge = true;
+                    break;
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+
+        if(tooLarge){
+            response.abort();
+            discard();
+            return null;
+        }
+
+        //the connection ended early: keep what arrived, for the next transfer
+        if(length>=0 && total<(append? offset : 0)+length){
+            throw new IOException("Incomplete body for "+url);
+        }
+
+        return complete();
+    }
+
+    /**
+     * Let other transfers of the same url use the ".part" file.
+     * Always call it when done with this transfer.
+     */
+    public void close(){
+        if(resumable){
+            synchronized (claimed){
+                claimed.remove(HttpCache.keyOf(url));
+            }
+        }else{
+            discard();
+        }
+    }
+
+    public int getStatusCode(){
+        return statusCode;
+    }
+
+    public String getEtag(){
+        return etag;
+    }
+
+    public String getLastModified(){
+        return lastModified;
+    }
+
+    public String getCharset(){
+        return charset;
+    }
+
+    public String getFinalUrl(){
+        return finalUrl==null? url : finalUrl;
+    }
+
+    public String getCacheControl(){
+        return cacheControl;
+    }
+
+    /**
+     * Turn the ".part" file into a complete file (with a unique name).
+     * @return
+     * @throws IOException
+     */
+    private File complete() throws IOException {
+
+        File file;
+        synchronized (claimed){
+            file = new File(dir, HttpCache.keyOf(url)+"_"+System.currentTimeMillis()+"_"+(completedCount++));
+        }
+
+        state.delete();
+        if(!part.renameTo(file)){
+            part.delete();
+            throw new IOException("Couldn't move "+part.getPath());
+        }
+        return file;
+    }
+
+    /**
+     * Forget the interrupted transfer (if any).
+     */
+    private void discard(){
+        part.delete();
+        state.delete();
+    }
+
+    /**
+     * Read the validator of the ".part" file.
+     * @return null if there's none (then it can't be resumed).
+     */
+    private Properties readState(){
+
+        if(!state.exists()){
+            return null;
+        }
+
+        Properties props = new Properties();
+        try(InputStream in = new FileInputStream(state)){
+            props.load(in);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        return url.equals(props.getProperty("url")) && props.getProperty("validator")!=null? props : null;
+    }
+
+    /**
+     * Write the validator of the ".part" file (if the response has one).
+     * @param canResume false if the ".part" file's bytes don't match the server's offsets.
+     */
+    private void writeState(boolean canResume){
+
+        String validator = etag!=null && !etag.startsWith("W/")? etag : lastModified;
+        if(validator==null || !resumable || !canResume){
+            state.delete();
+            return;
+        }
+
+        Properties props = new Properties();
+        props.setProperty("url", url);
+        props.setProperty("validator", validator);
+        if(etag!=null){
+            props.setProperty("etag", etag);
+        }
+        if(lastModified!=null){
+            props.setProperty("lastModified", lastModified);
+        }
+        if(charset!=null){
+            props.setProperty("charset", charset);
+        }
+
+        try(OutputStream out = new FileOutputStream(state)){
+            props.store(out, null);
+        } catch (IOException e) {
+            e.printStackTrace();
+            state.delete();
+        }
+    }
+
+    /**
+     * True for the content types of webpages (text/*, xml).
+     * @param contentType
+     * @return true if unknown.
+     */
+    private static boolean isTextual(String contentType){
+        if(contentType==null){
+            return true;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        if(type.startsWith("text/")){
+            return true;
+        }
+        int params = type.indexOf(';');
+        type = (params==-1? type : type.substring(0, params)).trim();
+        return (type.startsWith("application/")) && type.endsWith("xml");
+    }
+
+    /**
+     * Get the first byte of a Content-Range header ("bytes first-last/total").
+     * @param header
+     * @return -1 if missing or malformed.
+     */
+    private static long startOf(String header){
+        if(header==null || !header.startsWith("bytes ")){
+            return -1;
+        }
+        int dash = header.indexOf('-');
+        if(dash==-1){
+            return -1;
+        }
+        return parseLength(header.substring(6, dash));
+    }
+
+    /**
+     * Parse a Content-Length header.
+     * @param header
+     * @return -1 if missing or malformed.
+     */
+    static long parseLength(String header){
+        if(header==null){
+            return -1;
+        }
+        try{
+            return Long.parseLong(header.trim());
+        }catch (NumberFormatException e){
+            return -1;
+        }
+    }
+
+
+}
@@ -0,0 +1,226 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.luxlunaris.openarticlereader.model.interfaces.Page;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps Pages sorted newest first, by a last-modified time that's
+ * computed once (when a Page is added or modified) rather than on every comparison.
+ *
+ * Adding, removing and re-positioning a modified Page are O(log n);
+ * getting the k Pages that follow a given position is O(log n + k).
+ *
+ * It's safe to use from several threads. Readers that need all of the Pages
+ * get an immutable snapshot, copied once after each change (copy-on-write),
+ * so they can iterate it without blocking writers for the whole iteration.
+ */
+public class TimeOrderedPages {
+
+    /**
+     * The Pages, sorted by their keys.
+     */
+    private final TreeMap<Key, Page> byKey;
+
+    /**
+     * The current key of each Page, by name.
+     */
+    private final HashMap<String, Key> keys;
+
+    /**
+     * All of the Pages newest first, as of the last change (null if stale).
+     */
+    private volatile List<Page> snapshot;
+
+
+    public TimeOrderedPages(){
+        byKey = new TreeMap<>();
+        keys = new HashMap<>();
+    }
+
+    /**
+     * Add a Page, unless there's already one with the same name.
+     * @param page
+     * @param lastModified
+     * @return true if it got added.
+     */
+    public synchronized boolean add(Page page, long lastModified){
+        if(keys.containsKey(page.getName())){
+            return false;
+        }
+        Key key = new Key(lastModified, page.getName());
+        keys.put(page.getName(), key);
+        byKey.put(key, page);
+        snapshot = null;
+        return true;
+    }
+
+    /**
+     * Move a Page to its new position after it got modified.
+     * (The Page object that was added is kept, even if passed a copy of it).
+     * @param page
+     * @param lastModified
+     * @return false if there's no such Page.
+     */
+    public synchronized boolean update(Page page, long lastModified){
+        Key old = keys.get(page.getName());
+        if(old==null){
+            return false;
+        }
+        if(old.lastModified==lastModified){
+            return true;
+        }
+        Key key = new Key(lastModified, page.getName());
+        keys.put(page.getName(), key);
+        byKey.put(key, byKey.remove(old));
+        snapshot = null;
+        return true;
+    }
+
+    /**
+     * Remove a Page.
+     * @param page
+     * @return true if it was there.
+     */
+    public synchronized boolean remove(Page page){
+        Key key = keys.remove(page.getName());
+        if(key==null){
+            return false;
+        }
+        byKey.remove(key);
+        snapshot = null;
+        return true;
+    }
+
+    /**
+     * True if there's a Page with the same name.
+     * @param page
+     * @return
+     */
+    public synchronized boolean contains(Page page){
+        return keys.containsKey(page.getName());
+    }
+
+    /**
+     * Get the Page with a given name.
+     * @param name
+     * @return null if not found.
+     */
+    public synchronized Page get(String name){
+        Key key = keys.get(name);
+        return key==null? null : byKey.get(key);
+    }
+
+    /**
+     * Get the Pages with the given names (those that exist), newest first.
+     * O(h log h) for h names, whatever the number of Pages.
+     * @param names
+     * @return
+     */
+    public synchronized List<Page> getAll(Collection<String> names){
+
+        TreeMap<Key, Page> found = new TreeMap<>();
+        for(String name : names){
+            Key key = keys.get(name);
+            if(key!=null){
+                found.put(key, byKey.get(key));
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    /**
+     * Get the current key of a Page.
+     * @param page
+     * @return null if not found.
+     */
+    public synchronized Key keyOf(Page page){
+        return keys.get(page.getName());
+    }
+
+    public synchronized int size(){
+        return keys.size();
+    }
+
+    /**
+     * Get (at most) a number of Pages that come after a position.
+     * @param after the key of the last Page already got, or null to start from the newest.
+     * @param amount
+     * @return
+     */
+    public synchronized List<Map.Entry<Key, Page>> next(Key after, int amount){
+
+        Map<Key, Page> tail = after==null? byKey : byKey.tailMap(after, false);
+
+        ArrayList<Map.Entry<Key, Page>> result = new ArrayList<>();
+        for(Map.Entry<Key, Page> entry : tail.entrySet()){
+            if(result.size()>=amount){
+                break;
+            }
+            result.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+        }
+        return result;
+    }
+
+    /**
+     * Get all of the Pages, newest first, as an immutable snapshot
+     * that later changes don't affect.
+     * @return
+     */
+    public List<Page> snapshot(){
+
+        List<Page> current = snapshot;
+        if(current!=null){
+            return current;
+        }
+
+        synchronized (this){
+            if(snapshot==null){
+                snapshot = Collections.unmodifiableList(new ArrayList<>(byKey.values()));
+            }
+            return snapshot;
+        }
+    }
+
+
+    /**
+     * The position of a Page: newest first, then by name (descending).
+     */
+    public static class Key implements Comparable<Key> {
+
+        final long lastModified;
+        final String name;
+
+        Key(long lastModified, String name){
+            this.lastModified = lastModified;
+            this.name = name;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            if(lastModified!=other.lastModified){
+                return lastModified>other.lastModified? -1 : 1;
+            }
+            return other.name.compareTo(name);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && compareTo((Key) o)==0;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode()*31+(int)(lastModified^(lastModified>>>32));
+        }
+    }
+
+
+}
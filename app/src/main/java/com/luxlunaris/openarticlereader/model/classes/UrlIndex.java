@@ -0,0 +1,110 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.luxlunaris.openarticlereader.model.services.UrlNormalizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Maps the urls of the saved webpages to the ids of their Pages.
+ *
+ * The urls are normalized (see UrlNormalizer), so that different spellings
+ * of the same url lead to the same Page. A Page can have several urls
+ * (eg: the one that was requested, and the one it got redirected to).
+ *
+ * It's safe to use from several threads.
+ */
+public class UrlIndex {
+
+    /**
+     * The id of the Page of each (normalized) url.
+     */
+    private final HashMap<String, String> idsByUrl;
+
+    /**
+     * The (normalized) urls of each Page, by id.
+     */
+    private final HashMap<String, ArrayList<String>> urlsById;
+
+
+    public UrlIndex(){
+        idsByUrl = new HashMap<>();
+        urlsById = new HashMap<>();
+    }
+
+    /**
+     * Get the id of the Page saved from a url.
+     * @param url
+     * @return null if there's none.
+     */
+    public synchronized String get(String url){
+        return url==null? null : idsByUrl.get(UrlNormalizer.normalize(url));
+    }
+
+    public synchronized boolean contains(String url){
+        return get(url)!=null;
+    }
+
+    /**
+     * Map a url to a Page, replacing the Page it was mapped to (if any).
+     * @param url
+     * @param id
+     */
+    public synchronized void put(String url, String id){
+
+        if(url==null || url.isEmpty()){
+            return;
+        }
+
+        String normal = UrlNormalizer.normalize(url);
+        String previous = idsByUrl.put(normal, id);
+        if(id.equals(previous)){
+            return;
+        }
+        if(previous!=null){
+            urlsById.get(previous).remove(normal);
+        }
+
+        ArrayList<String> urls = urlsById.get(id);
+        if(urls==null){
+            urls = new ArrayList<>();
+            urlsById.put(id, urls);
+        }
+        urls.add(normal);
+    }
+
+    /**
+     * Map a url to a Page, unless it's mapped to another Page already.
+     * @param url
+     * @param id
+     * @return the id of the Page it's mapped to already, or null if it got mapped.
+     */
+    public synchronized String putIfAbsent(String url, String id){
+        String current = get(url);
+        if(current!=null && !current.equals(id)){
+            return current;
+        }
+        put(url, id);
+        return null;
+    }
+
+    /**
+     * Forget all of the urls of a Page.
+     * @param id
+     */
+    public synchronized void removePage(String id){
+        ArrayList<String> urls = urlsById.remove(id);
+        if(urls==null){
+            return;
+        }
+        for(String url : urls){
+            idsByUrl.remove(url);
+        }
+    }
+
+    public synchronized int size(){
+        return idsByUrl.size();
+    }
+
+
+}
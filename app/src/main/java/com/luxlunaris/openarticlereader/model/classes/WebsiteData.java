@@ -1,19 +1,163 @@
 package com.luxlunaris.openarticlereader.model.classes;
 
-import org.jsoup.Connection;
 import org.jsoup.nodes.Document;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * A downloaded webpage: its document is there from the start,
+ * its images arrive later (in any order) while they're fetched in parallel.
+ *
+ * The images are handed over to an ImageListener in document order,
+ * as soon as all of the images before them arrived (or failed).
+ * Each image is a (staged) file that the listener takes ownership of.
+ *
+ * The listener is called without holding this object's lock, by one thread
+ * at a time (so the batches still arrive in order).
+ */
 public class WebsiteData {
 
 
+    /**
+     * The url that was requested (the document may come from another, after redirects).
+     */
+    public final String url;
+
     public Document doc;
-    public ArrayList<Connection.Response> images;
 
-    public WebsiteData(Document doc, ArrayList<Connection.Response> images) {
+    /**
+     * True if the webpage should be saved again even if it was already.
+     */
+    public final boolean refresh;
+
+    /**
+     * The images that arrived but weren't handed over yet, by position in the document.
+     */
+    private final File[] images;
+
+    /**
+     * Whether the fetch of each image is over (succeeded or failed).
+     */
+    private final boolean[] done;
+
+    /**
+     * How many images (from the first) were handed over.
+     */
+    private int delivered = 0;
+
+    /**
+     * True while a thread is handing over images to the listener.
+     */
+    private boolean delivering = false;
+
+    /**
+     * Receives the images.
+     */
+    private ImageListener imageListener;
+
+
+    public interface ImageListener{
+
+        /**
+         * Called with the next images of the page, in document order
+         * (the failed ones are skipped).
+         * @param images
+         */
+        public void onImagesReady(List<File> images);
+    }
+
+
+    /**
+     * @param url the url that was requested.
+     * @param doc
+     * @param numOfImages how many images are going to be fetched.
+     * @param refresh true if the webpage should be saved again even if it was already.
+     */
+    public WebsiteData(String url, Document doc, int numOfImages, boolean refresh) {
+        this.url = url;
         this.doc = doc;
-        this.images = images;
+        this.refresh = refresh;
+        this.images = new File[numOfImages];
+        this.done = new boolean[numOfImages];
+    }
+
+    /**
+     * Start handing over the images, including those that already arrived.
+     * @param listener
+     */
+    public void setImageListener(ImageListener listener){
+        synchronized (this){
+            this.imageListener = listener;
+        }
+        deliver();
+    }
+
+    /**
+     * Called when the fetch of an image is over.
+     * @param index the image's position in the document.
+     * @param image null if it failed.
+     */
+    void setImage(int index, File image){
+        synchronized (this){
+            images[index] = image;
+            done[index] = true;
+        }
+        deliver();
+    }
+
+    /**
+     * True if all of the images were handed over.
+     * @return
+     */
+    public synchronized boolean isComplete(){
+        return delivered==images.length && !delivering;
+    }
+
+    /**
+     * Hand over the images that are next in line, unless another thread is
+     * already at it (then it hands them over too, once done with its own).
+     */
+    private void deliver(){
+
+        while(true){
+
+            ImageListener listener;
+            ArrayList<File> ready = new ArrayList<>();
+
+            //collect them under the lock...
+            synchronized (this){
+
+                if(imageListener==null || delivering){
+                    return;
+                }
+
+                while(delivered<images.length && done[delivered]){
+                    if(images[delivered]!=null){
+                        ready.add(images[delivered]);
+                        //not needed here anymore
+                        images[delivered] = null;
+                    }
+                    delivered++;
+                }
+
+                if(ready.isEmpty()){
+                    return;
+                }
+                listener = imageListener;
+                delivering = true;
+            }
+
+            //...and hand them over outside of it
+            try{
+                listener.onImagesReady(ready);
+            }finally {
+                synchronized (this){
+                    delivering = false;
+                }
+            }
+        }
     }
 
 
@@ -0,0 +1,25 @@
+package com.luxlunaris.openarticlereader.model.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a server answers a request with an error status
+ * (or one that the downloader doesn't know what to do with).
+ *
+ */
+public class HttpStatusException extends IOException {
+
+    private final int statusCode;
+
+    public HttpStatusException(int statusCode, String url){
+        super("HTTP "+statusCode+" for "+url);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode(){
+        return statusCode;
+    }
+
+
+
+}
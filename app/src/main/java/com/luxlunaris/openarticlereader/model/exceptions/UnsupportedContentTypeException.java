@@ -0,0 +1,18 @@
+package com.luxlunaris.openarticlereader.model.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a url that should lead to a webpage
+ * leads to something else (eg: a pdf, a video).
+ *
+ */
+public class UnsupportedContentTypeException extends IOException {
+
+    public UnsupportedContentTypeException(String contentType, String url){
+        super("Unsupported content type "+contentType+" for "+url);
+    }
+
+
+
+}
@@ -52,6 +52,27 @@ public interface Metadata {
 	 * @param tagName
 	 */
 	public void removeTag(String tagName);
+
+	/**
+	 * Get the names of all of the tags.
+	 * @return
+	 */
+	public String[] getTagNames();
+
+	/**
+	 * Make sure all of the changes are stored.
+	 */
+	public void flush();
+
+	/**
+	 * Start from an empty set of tags, for a newly created Page.
+	 */
+	public void create();
+
+	/**
+	 * Forget the tags of the Page and of its sub-pages, when it gets deleted.
+	 */
+	public void discard();
 	
 	
 }
@@ -1,6 +1,7 @@
 package com.luxlunaris.openarticlereader.model.interfaces;
 
 import com.luxlunaris.openarticlereader.control.interfaces.PageListener;
+import com.luxlunaris.openarticlereader.model.services.KeywordMatcher;
 
 import java.io.File;
 import java.io.Serializable;
@@ -94,6 +95,14 @@ public interface Page extends Serializable {
 	 */
 	boolean contains(String[] keywords);
 
+	/**
+	 * Checks if this page contains ALL of the keywords of
+	 * a matcher (built once, shared by many Pages).
+	 * @param matcher
+	 * @return
+	 */
+	boolean contains(KeywordMatcher matcher);
+
 	/**
 	 * Is this Page currently selected?
 	 * @return
@@ -118,6 +127,12 @@ public interface Page extends Serializable {
 	 * @return
 	 */
 	String getSource();
+
+	/**
+	 * Get the Page's text without any html tags
+	 * @return
+	 */
+	String getText();
 	/**
 	 * Returns the image directory of this Page.
 	 * @return
@@ -125,6 +140,18 @@ public interface Page extends Serializable {
 	File getImageDir();
 
 
+	/**
+	 * Start a batch of changes: until the matching commitEdit(), changes
+	 * to the text and to the tags are only collected. (Batches can nest).
+	 */
+	void beginEdit();
+
+	/**
+	 * Commit a batch of changes: each changed file gets written once,
+	 * and the listeners get a single onModified().
+	 */
+	void commitEdit();
+
 	public void setTag(String tag, String value);
 	public String getStringTag(String tag);
 	public int getIntTag(String tag);
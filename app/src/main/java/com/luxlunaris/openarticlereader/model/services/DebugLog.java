@@ -0,0 +1,47 @@
+package com.luxlunaris.openarticlereader.model.services;
+
+import java.util.logging.Logger;
+
+/**
+ * Debug logging for the model, that doesn't depend on android.util.Log
+ * (so that the model can also run on a plain JVM).
+ *
+ * The messages go to a Sink: the app binds one to android.util.Log at startup.
+ * Until then (eg: on a plain JVM) they go to java.util.logging as FINE,
+ * which its default handlers drop, like debug logs.
+ */
+public class DebugLog {
+
+    /**
+     * Where the messages go.
+     */
+    public interface Sink {
+        void d(String tag, String message);
+    }
+
+    private static volatile Sink sink = new Sink() {
+        @Override
+        public void d(String tag, String message) {
+            Logger.getLogger(tag).fine(message);
+        }
+    };
+
+    /**
+     * Send the messages to another Sink.
+     * @param sink
+     */
+    public static void setSink(Sink sink){
+        DebugLog.sink = sink;
+    }
+
+    /**
+     * Log a debug message under a tag.
+     * @param tag
+     * @param message
+     */
+    public static void d(String tag, String message){
+        sink.d(tag, message);
+    }
+
+
+}
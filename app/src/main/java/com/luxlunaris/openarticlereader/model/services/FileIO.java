@@ -32,12 +32,12 @@ public class FileIO {
 		try {
 			BufferedReader reader = new BufferedReader(new FileReader(new File(filePath)));
 			String buf = null;
-			String result="";
+			StringBuilder result = new StringBuilder();
 			while((buf=reader.readLine())!=null) {
-				result+=buf+"\n";
+				result.append(buf).append('\n');
 			}
 			reader.close();
-			return result;
+			return result.toString();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -45,6 +45,29 @@ public class FileIO {
 	}
 	
 	
+	/**
+	 * Reads the exact contents of a file (line endings untouched).
+	 * @param filePath
+	 * @return null if the file can't be read.
+	 */
+	public static synchronized String readExact(String filePath) {
+		try {
+			FileReader reader = new FileReader(new File(filePath));
+			char[] buf = new char[8192];
+			StringBuilder result = new StringBuilder();
+			int len;
+			while((len=reader.read(buf))>0) {
+				result.append(buf, 0, len);
+			}
+			reader.close();
+			return result.toString();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+
 	/**
 	 * Writes text to a file.
 	 * @param filePath
@@ -0,0 +1,388 @@
+package com.luxlunaris.openarticlereader.model.services;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Converts html to the plain text that android.text.Html.fromHtml() would
+ * display, character by character, without building a document tree.
+ *
+ * Mirrors Html.fromHtml()'s (legacy mode) rules for the tags the app writes:
+ * - spaces and newlines in the text collapse into a single space,
+ * - block elements (p, div, headings...) are separated by two newlines,
+ * - br is a newline,
+ * - img is a single object replacement character,
+ * - any other tag (b, i, u...) produces no text.
+ *
+ * So the offsets in the resulting text match those of the rendered text.
+ */
+public class HtmlToText {
+
+    /**
+     * Stands in for an image in the rendered text.
+     */
+    public static final char OBJECT_REPLACEMENT = '\uFFFC';
+
+    /**
+     * Newlines around a block element.
+     */
+    private static final int BLOCK_MARGIN = 2;
+
+    /**
+     * Entities longer than this aren't entities.
+     */
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    /**
+     * Parser states.
+     */
+    private static final int TEXT = 0;
+    private static final int TAG_START = 1;
+    private static final int TAG_NAME = 2;
+    private static final int TAG_ATTRIBUTES = 3;
+    private static final int BANG = 4;
+    private static final int COMMENT_START = 5;
+    private static final int COMMENT = 6;
+    private static final int DECLARATION = 7;
+    private static final int ENTITY = 8;
+
+    /**
+     * The text produced so far.
+     */
+    private final StringBuilder out;
+
+    /**
+     * The name of the tag being read, or of the entity being read.
+     */
+    private final StringBuilder name;
+
+    private int state = TEXT;
+
+    /**
+     * True if the tag being read is an end tag.
+     */
+    private boolean closing;
+
+    /**
+     * The quote the current attribute value is enclosed in, or 0.
+     */
+    private char quote;
+
+    /**
+     * Consecutive dashes read inside a comment.
+     */
+    private int dashes;
+
+    /**
+     * How many block elements are open.
+     */
+    private int openBlocks;
+
+
+    private HtmlToText(int capacity){
+        out = new StringBuilder(capacity);
+        name = new StringBuilder();
+    }
+
+    /**
+     * Convert an html string to plain text.
+     * @param html
+     * @return
+     */
+    public static String convert(CharSequence html){
+        HtmlToText converter = new HtmlToText(html.length());
+        for(int i=0; i<html.length(); i++){
+            converter.feed(html.charAt(i));
+        }
+        return converter.finish();
+    }
+
+    /**
+     * Convert an html stream to plain text.
+     * @param html
+     * @return
+     * @throws IOException
+     */
+    public static String convert(Reader html) throws IOException {
+        HtmlToText converter = new HtmlToText(1024);
+        char[] buf = new char[4096];
+        int len;
+        while((len=html.read(buf))>0){
+            for(int i=0; i<len; i++){
+                converter.feed(buf[i]);
+            }
+        }
+        return converter.finish();
+    }
+
+    /**
+     * Process the next character of the html.
+     * @param c
+     */
+    private void feed(char c){
+
+        switch (state){
+
+            case TEXT:
+                if(c=='<'){
+                    state = TAG_START;
+                }else if(c=='&'){
+                    name.setLength(0);
+                    state = ENTITY;
+                }else{
+                    text(c);
+                }
+                break;
+
+            case TAG_START:
+                name.setLength(0);
+                if(c=='/'){
+                    closing = true;
+                    state = TAG_NAME;
+                }else if(c=='!'){
+                    state = BANG;
+                }else if(c=='?'){
+                    state = DECLARATION;
+                }else if(Character.isLetter(c)){
+                    closing = false;
+                    name.append(Character.toLowerCase(c));
+                    state = TAG_NAME;
+                }else{
+                    //not a tag after all
+                    state = TEXT;
+                    text('<');
+                    feed(c);
+                }
+                break;
+
+            case TAG_NAME:
+                if(Character.isLetterOrDigit(c)){
+                    name.append(Character.toLowerCase(c));
+                }else{
+                    quote = 0;
+                    state = TAG_ATTRIBUTES;
+                    feed(c);
+                }
+                break;
+
+            case TAG_ATTRIBUTES:
+                if(quote!=0){
+                    if(c==quote){
+                        quote = 0;
+                    }
+                }else if(c=='"' || c=='\''){
+                    quote = c;
+                }else if(c=='>'){
+                    state = TEXT;
+                    tag(name.toString(), closing);
+                }
+                break;
+
+            case BANG:
+                state = c=='-'? COMMENT_START : DECLARATION;
+                if(c=='>'){
+                    state = TEXT;
+                }
+                break;
+
+            case COMMENT_START:
+                dashes = 0;
+                state = c=='-'? COMMENT : DECLARATION;
+                if(c=='>'){
+                    state = TEXT;
+                }
+                break;
+
+            case COMMENT:
+                if(c=='-'){
+                    dashes++;
+                }else if(c=='>' && dashes>=2){
+                    state = TEXT;
+                }else{
+                    dashes = 0;
+                }
+                break;
+
+            case DECLARATION:
+                if(c=='>'){
+                    state = TEXT;
+                }
+                break;
+
+            case ENTITY:
+                if(c==';'){
+                    state = TEXT;
+                    entity(name.toString());
+                }else if((Character.isLetterOrDigit(c) || c=='#') && name.length()<MAX_ENTITY_LENGTH){
+                    name.append(c);
+                }else{
+                    //not an entity after all
+                    state = TEXT;
+                    literalEntity();
+                    feed(c);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Get the resulting text.
+     * @return
+     */
+    private String finish(){
+        if(state==ENTITY){
+            literalEntity();
+        }
+        return out.toString();
+    }
+
+    /**
+     * Append a character of text, collapsing whitespace.
+     * @param c
+     */
+    private void text(char c){
+
+        if(c==' ' || c=='\n'){
+            char pred = out.length()==0? '\n' : out.charAt(out.length()-1);
+            if(pred!=' ' && pred!='\n'){
+                out.append(' ');
+            }
+            return;
+        }
+
+        out.append(c);
+    }
+
+    /**
+     * Handle a start or end tag.
+     * @param tag
+     * @param closing
+     */
+    private void tag(String tag, boolean closing){
+
+        if(isBlock(tag)){
+            if(!closing){
+                appendNewlines(BLOCK_MARGIN);
+                openBlocks++;
+            }else if(openBlocks>0){
+                appendNewlines(BLOCK_MARGIN);
+                openBlocks--;
+            }
+            return;
+        }
+
+        if(closing){
+            return;
+        }
+
+        if(tag.equals("br")){
+            out.append('\n');
+        }else if(tag.equals("img")){
+            out.append(OBJECT_REPLACEMENT);
+        }
+    }
+
+    /**
+     * True if a tag is a block element.
+     * @param tag
+     * @return
+     */
+    private static boolean isBlock(String tag){
+        switch (tag){
+            case "p":
+            case "div":
+            case "blockquote":
+            case "ul":
+            case "li":
+            case "h1":
+            case "h2":
+            case "h3":
+            case "h4":
+            case "h5":
+            case "h6":
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Make sure the text ends with (at least) a number of newlines,
+     * unless the text is empty.
+     * @param min
+     */
+    private void appendNewlines(int min){
+
+        if(out.length()==0){
+            return;
+        }
+
+        int existing = 0;
+        for(int i=out.length()-1; i>=0 && out.charAt(i)=='\n'; i--){
+            existing++;
+        }
+
+        for(int i=existing; i<min; i++){
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Decode an entity, leaving unknown ones as they are.
+     * @param entity (without & and ;)
+     */
+    private void entity(String entity){
+
+        int decoded = -1;
+
+        if(entity.startsWith("#x") || entity.startsWith("#X")){
+            decoded = parseCodePoint(entity.substring(2), 16);
+        }else if(entity.startsWith("#")){
+            decoded = parseCodePoint(entity.substring(1), 10);
+        }else{
+            switch (entity){
+                case "amp": decoded = '&'; break;
+                case "lt": decoded = '<'; break;
+                case "gt": decoded = '>'; break;
+                case "quot": decoded = '"'; break;
+                case "apos": decoded = '\''; break;
+                case "nbsp": decoded = '\u00A0'; break;
+            }
+        }
+
+        if(decoded<0){
+            literalEntity();
+            out.append(';');
+            return;
+        }
+
+        if(Character.isSupplementaryCodePoint(decoded)){
+            out.append(Character.toChars(decoded));
+        }else{
+            text((char) decoded);
+        }
+    }
+
+    /**
+     * Append the entity being read as literal text.
+     */
+    private void literalEntity(){
+        out.append('&').append(name);
+    }
+
+    /**
+     * Parse a numeric entity.
+     * @param digits
+     * @param radix
+     * @return -1 if invalid.
+     */
+    private static int parseCodePoint(String digits, int radix){
+        try{
+            int codePoint = Integer.parseInt(digits, radix);
+            return Character.isValidCodePoint(codePoint)? codePoint : -1;
+        }catch (NumberFormatException e){
+            return -1;
+        }
+    }
+
+
+}
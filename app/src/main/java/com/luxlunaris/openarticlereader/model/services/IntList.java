@@ -0,0 +1,75 @@
+package com.luxlunaris.openarticlereader.model.services;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints (no boxing).
+ */
+public class IntList implements Serializable {
+
+    private int[] values;
+    private int size;
+
+
+    public IntList(){
+        values = new int[8];
+        size = 0;
+    }
+
+    /**
+     * Append a value.
+     * @param value
+     */
+    public void add(int value){
+        if(size==values.length){
+            values = Arrays.copyOf(values, size*2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Get the i-th value.
+     * @param i
+     * @return
+     */
+    public int get(int i){
+        if(i>=size){
+            throw new IndexOutOfBoundsException(i+" >= "+size);
+        }
+        return values[i];
+    }
+
+    /**
+     * Get the last value.
+     * @return
+     */
+    public int last(){
+        return get(size-1);
+    }
+
+    /**
+     * How many values are in the list.
+     * @return
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Forget all of the values (keeping the allocated space).
+     */
+    public void clear(){
+        size = 0;
+    }
+
+    /**
+     * Copy the values to an array of the right size.
+     * @return
+     */
+    public int[] toArray(){
+        return Arrays.copyOf(values, size);
+    }
+
+
+}
@@ -0,0 +1,275 @@
+package com.luxlunaris.openarticlereader.model.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks if a text contains ALL of a set of keywords (case insensitive),
+ * in a single pass over the text (Aho-Corasick automaton, compiled
+ * into a transition table over the characters of the keywords).
+ *
+ * Build it once per query, then use it on as many texts as needed:
+ * it's immutable, hence safe to share across threads.
+ */
+public class KeywordMatcher {
+
+    /**
+     * The distinct (case folded) non-empty keywords.
+     */
+    private final String[] keywords;
+
+    /**
+     * Class of each character (below 256) that's in some keyword, 0 for the others.
+     */
+    private final int[] latinClasses;
+
+    /**
+     * Class of each character below 256 of a text, as it is (before folding its case).
+     */
+    private final int[] textClasses;
+
+    /**
+     * The other characters that are in some keyword (sorted), and their classes.
+     */
+    private final char[] otherChars;
+    private final int[] otherClasses;
+
+    /**
+     * Number of character classes (the ones in the keywords, plus 0 for any other).
+     */
+    private final int numClasses;
+
+    /**
+     * Transition table: next state = delta[state*numClasses+class].
+     * The failure links are already followed while building it.
+     * (The states are stored as their offset in the table, state*numClasses,
+     * except for the ones that recognize some keyword: as their bit-flipped (negative) number).
+     */
+    private final int[] delta;
+
+    /**
+     * The keywords (bit i = keyword i) recognized upon entering each state,
+     * null for the states that recognize none.
+     */
+    private final long[][] outputs;
+
+    /**
+     * Number of 64-bit words in a keyword set.
+     */
+    private final int words;
+
+
+    public KeywordMatcher(String[] keywords){
+
+        //fold and de-duplicate the keywords, dropping empty ones (contained in any text)
+        LinkedHashSet<String> distinct = new LinkedHashSet<>();
+        for(String keyword : keywords){
+            if(!keyword.isEmpty()){
+                distinct.add(fold(keyword));
+            }
+        }
+        this.keywords = distinct.toArray(new String[0]);
+        this.words = (this.keywords.length+63)/64;
+
+        //number the distinct characters of the keywords
+        latinClasses = new int[256];
+        TreeMap<Character, Integer> others = new TreeMap<>();
+        int classes = 1;
+        for(String keyword : this.keywords){
+            for(char c : keyword.toCharArray()){
+                if(c<256){
+                    if(latinClasses[c]==0){
+                        latinClasses[c] = classes++;
+                    }
+                }else if(!others.containsKey(c)){
+                    others.put(c, classes++);
+                }
+            }
+        }
+        numClasses = classes;
+        textClasses = new int[256];
+        otherChars = new char[others.size()];
+        otherClasses = new int[others.size()];
+        int o = 0;
+        for(Map.Entry<Character, Integer> entry : others.entrySet()){
+            otherChars[o] = entry.getKey();
+            otherClasses[o++] = entry.getValue();
+        }
+        for(char c=0; c<256; c++){
+            textClasses[c] = classOf(fold(c));
+        }
+
+        //build the trie
+        ArrayList<int[]> edges = new ArrayList<>();
+        ArrayList<long[]> out = new ArrayList<>();
+        edges.add(new int[numClasses]);
+        out.add(new long[words]);
+
+        for(int k=0; k<this.keywords.length; k++){
+            int state = 0;
+            for(char c : this.keywords[k].toCharArray()){
+                int cls = classOf(c);
+                int next = edges.get(state)[cls];
+                if(next==0){
+                    next = edges.size();
+                    edges.get(state)[cls] = next;
+                    edges.add(new int[numClasses]);
+                    out.add(new long[words]);
+                }
+                state = next;
+            }
+            out.get(state)[k/64] |= 1L<<(k%64);
+        }
+
+        int numStates = edges.size();
+        int[] fail = new int[numStates];
+        delta = new int[numStates*numClasses];
+
+        //breadth-first: compute the failure links, merge the outputs along them,
+        //and fill in the missing transitions with the ones of the failure state
+        int[] queue = new int[numStates];
+        int head = 0, tail = 0;
+        for(int cls=0; cls<numClasses; cls++){
+            int child = edges.get(0)[cls];
+            delta[cls] = child;
+            if(child!=0){
+                queue[tail++] = child;
+            }
+        }
+        while(head<tail){
+            int s = queue[head++];
+            for(int cls=0; cls<numClasses; cls++){
+                int child = edges.get(s)[cls];
+                if(child==0){
+                    delta[s*numClasses+cls] = delta[fail[s]*numClasses+cls];
+                    continue;
+                }
+                delta[s*numClasses+cls] = child;
+                fail[child] = delta[fail[s]*numClasses+cls];
+                long[] childOut = out.get(child);
+                long[] failOut = out.get(fail[child]);
+                for(int w=0; w<words; w++){
+                    childOut[w] |= failOut[w];
+                }
+                queue[tail++] = child;
+            }
+        }
+
+        outputs = new long[numStates][];
+        for(int s=0; s<numStates; s++){
+            for(long word : out.get(s)){
+                if(word!=0){
+                    outputs[s] = out.get(s);
+                    break;
+                }
+            }
+        }
+
+        //store the states as offsets in the table, flagging the ones with outputs
+        for(int i=0; i<delta.length; i++){
+            delta[i] = outputs[delta[i]]==null? delta[i]*numClasses : ~delta[i];
+        }
+    }
+
+    /**
+     * True if the text contains ALL of the keywords.
+     * Stops reading the text as soon as the last keyword is found.
+     * @param text
+     * @return
+     */
+    public boolean matchesAll(CharSequence text){
+
+        int remaining = keywords.length;
+        if(remaining==0){
+            return true;
+        }
+
+        long[] seen = new long[words];
+        int state = 0;
+
+        //read the text in chunks, to go through a plain array
+        int length = text.length();
+        char[] chunk = new char[Math.min(length, 4096)];
+
+        for(int start=0; start<length; start+=chunk.length){
+
+            int end = Math.min(length, start+chunk.length);
+            if(text instanceof String){
+                ((String) text).getChars(start, end, chunk, 0);
+            }else{
+                for(int i=start; i<end; i++){
+                    chunk[i-start] = text.charAt(i);
+                }
+            }
+
+            for(int i=0; i<end-start; i++){
+
+                char c = chunk[i];
+                state = delta[state+(c<256? textClasses[c] : classOf(fold(c)))];
+                if(state>=0){
+                    continue;
+                }
+
+                //count the keywords seen for the first time
+                long[] found = outputs[~state];
+                state = ~state*numClasses;
+                for(int w=0; w<words; w++){
+                    long fresh = found[w] & ~seen[w];
+                    if(fresh!=0){
+                        seen[w] |= fresh;
+                        remaining -= Long.bitCount(fresh);
+                    }
+                }
+
+                if(remaining==0){
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the class of a (case folded) character.
+     * @param c
+     * @return 0 if it's in none of the keywords.
+     */
+    private int classOf(char c){
+        if(c<256){
+            return latinClasses[c];
+        }
+        int i = Arrays.binarySearch(otherChars, c);
+        return i<0? 0 : otherClasses[i];
+    }
+
+    /**
+     * Fold the case of a string.
+     * @param s
+     * @return
+     */
+    private static String fold(String s){
+        char[] chars = s.toCharArray();
+        for(int i=0; i<chars.length; i++){
+            chars[i] = fold(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Fold the case of a character.
+     * @param c
+     * @return
+     */
+    private static char fold(char c){
+        if(c<128){
+            return c>='a' && c<='z'? (char)(c-('a'-'A')) : c;
+        }
+        return Character.toUpperCase(c);
+    }
+
+
+}
@@ -0,0 +1,109 @@
+package com.luxlunaris.openarticlereader.model.services;
+
+/**
+ * Finds the occurrences of a token in a text: a literal (not a regex),
+ * case insensitive, substring search (Knuth-Morris-Pratt).
+ *
+ * Occurrences don't overlap: the search resumes after the end of each match.
+ */
+public class TokenFinder {
+
+    /**
+     * The case folded token.
+     */
+    private final char[] token;
+
+    /**
+     * failure[i] = length of the longest proper border of token[0..i].
+     */
+    private final int[] failure;
+
+
+    public TokenFinder(String token){
+
+        this.token = new char[token.length()];
+        for(int i=0; i<token.length(); i++){
+            this.token[i] = fold(token.charAt(i));
+        }
+
+        failure = new int[this.token.length];
+        for(int i=1, k=0; i<this.token.length; i++){
+            while(k>0 && this.token[i]!=this.token[k]){
+                k = failure[k-1];
+            }
+            if(this.token[i]==this.token[k]){
+                k++;
+            }
+            failure[i] = k;
+        }
+    }
+
+    /**
+     * Count the occurrences of the token in a text.
+     * (Allocates nothing).
+     * @param text
+     * @return
+     */
+    public int count(CharSequence text){
+        return search(text, null);
+    }
+
+    /**
+     * Append the start offsets of the occurrences of the token in a text to a list.
+     * @param text
+     * @param positions
+     * @return the number of occurrences.
+     */
+    public int findAll(CharSequence text, IntList positions){
+        return search(text, positions);
+    }
+
+    /**
+     * Scan the text once, counting (and optionally recording) the matches.
+     * @param text
+     * @param positions null if only counting.
+     * @return
+     */
+    private int search(CharSequence text, IntList positions){
+
+        if(token.length==0){
+            return 0;
+        }
+
+        int matches = 0;
+
+        for(int i=0, k=0; i<text.length(); i++){
+
+            char c = fold(text.charAt(i));
+
+            while(k>0 && c!=token[k]){
+                k = failure[k-1];
+            }
+            if(c==token[k]){
+                k++;
+            }
+
+            if(k==token.length){
+                matches++;
+                if(positions!=null){
+                    positions.add(i-k+1);
+                }
+                //no overlapping matches
+                k = 0;
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Fold the case of a character.
+     * @param c
+     * @return
+     */
+    private static char fold(char c){
+        return Character.toUpperCase(c);
+    }
+
+
+}
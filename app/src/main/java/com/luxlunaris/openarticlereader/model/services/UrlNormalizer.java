@@ -0,0 +1,175 @@
+package com.luxlunaris.openarticlereader.model.services;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+
+/**
+ * Reduces the different spellings of the same webpage's url to a single one,
+ * so that urls can be compared (eg: to tell if a webpage was already saved).
+ *
+ * The normal form:
+ * - has a lowercase scheme and host, without "www." and without the default port;
+ * - has no fragment ("#...") and no tracking parameters (utm_*, fbclid, ...);
+ * - keeps the rest of the query in its original order;
+ * - has a path without dot-segments and trailing slash ("/" if empty).
+ */
+public class UrlNormalizer {
+
+    /**
+     * Query parameters that only track where a visit came from.
+     */
+    private static final HashSet<String> TRACKING_PARAMS = new HashSet<>(Arrays.asList(
+            "fbclid", "gclid", "dclid", "msclkid", "yclid", "mc_cid", "mc_eid",
+            "igshid", "_ga", "_gl", "ref_src", "spm"));
+
+    /**
+     * Prefixes of query parameters that only track where a visit came from.
+     */
+    private static final String[] TRACKING_PREFIXES = {"utm_", "pk_", "hsa_"};
+
+
+    /**
+     * Normalize a url.
+     * @param url
+     * @return the normal form, or the trimmed url itself if it's not a valid http(s) url.
+     */
+    public static String normalize(String url){
+
+        if(url==null){
+            return null;
+        }
+
+        url = url.trim();
+
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            return url;
+        }
+
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if(scheme==null || host==null){
+            return url;
+        }
+
+        scheme = scheme.toLowerCase(Locale.ROOT);
+        if(!scheme.equals("http") && !scheme.equals("https")){
+            return url;
+        }
+
+        host = host.toLowerCase(Locale.ROOT);
+        if(host.endsWith(".")){
+            host = host.substring(0, host.length()-1);
+        }
+        if(host.startsWith("www.")){
+            host = host.substring(4);
+        }
+
+        int port = uri.getPort();
+        if((scheme.equals("http") && port==80) || (scheme.equals("https") && port==443)){
+            port = -1;
+        }
+
+        StringBuilder normal = new StringBuilder();
+        normal.append(scheme).append("://").append(host);
+        if(port!=-1){
+            normal.append(':').append(port);
+        }
+        normal.append(normalizePath(uri.getRawPath()));
+
+        String query = normalizeQuery(uri.getRawQuery());
+        if(!query.isEmpty()){
+            normal.append('?').append(query);
+        }
+
+        return normal.toString();
+    }
+
+    /**
+     * Remove the dot-segments, the empty segments and the trailing slash of a path.
+     * @param path
+     * @return
+     */
+    private static String normalizePath(String path){
+
+        if(path==null || path.isEmpty()){
+            return "/";
+        }
+
+        ArrayList<String> segments = new ArrayList<>();
+        for(String segment : path.split("/")){
+            if(segment.isEmpty() || segment.equals(".")){
+                continue;
+            }
+            if(segment.equals("..")){
+                if(!segments.isEmpty()){
+                    segments.remove(segments.size()-1);
+                }
+                continue;
+            }
+            segments.add(segment);
+        }
+
+        if(segments.isEmpty()){
+            return "/";
+        }
+
+        StringBuilder normal = new StringBuilder();
+        for(String segment : segments){
+            normal.append('/').append(segment);
+        }
+        return normal.toString();
+    }
+
+    /**
+     * Remove the tracking parameters (and empty pairs) from a query.
+     * @param query
+     * @return "" if nothing's left.
+     */
+    private static String normalizeQuery(String query){
+
+        if(query==null || query.isEmpty()){
+            return "";
+        }
+
+        StringBuilder normal = new StringBuilder();
+        for(String pair : query.split("&")){
+
+            if(pair.isEmpty()){
+                continue;
+            }
+
+            int equals = pair.indexOf('=');
+            String name = (equals==-1? pair : pair.substring(0, equals)).toLowerCase(Locale.ROOT);
+            if(isTracking(name)){
+                continue;
+            }
+
+            if(normal.length()>0){
+                normal.append('&');
+            }
+            normal.append(pair);
+        }
+        return normal.toString();
+    }
+
+    private static boolean isTracking(String name){
+        if(TRACKING_PARAMS.contains(name)){
+            return true;
+        }
+        for(String prefix : TRACKING_PREFIXES){
+            if(name.startsWith(prefix)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+}
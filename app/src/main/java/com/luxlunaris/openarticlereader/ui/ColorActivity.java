@@ -12,6 +12,8 @@ import com.luxlunaris.openarticlereader.R;
 import com.luxlunaris.openarticlereader.control.classes.SETTINGS_TAGS;
 import com.luxlunaris.openarticlereader.control.classes.Settings;
 import com.luxlunaris.openarticlereader.control.interfaces.SettingsTagListener;
+import com.luxlunaris.openarticlereader.model.classes.MetadataCatalog;
+import com.luxlunaris.openarticlereader.model.classes.MetadataFile;
 
 import java.util.List;
 
@@ -72,6 +74,18 @@ public abstract class ColorActivity extends AppCompatActivity implements Setting
     }
 
 
+    /**
+     * Write any pending metadata changes before the app
+     * goes in the background (and may get killed).
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        MetadataFile.flushAll();
+        MetadataCatalog.flushAll();
+    }
+
+
     /**
      * Set the current theme.
      * @param theme
@@ -10,6 +10,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.luxlunaris.openarticlereader.control.classes.Notebook;
 import com.luxlunaris.openarticlereader.control.classes.SETTINGS_TAGS;
 import com.luxlunaris.openarticlereader.control.classes.Settings;
+import com.luxlunaris.openarticlereader.model.services.DebugLog;
 
 /**
  * This Activity is just a launchpad, and it's never actually
@@ -41,6 +42,14 @@ public class MainActivity extends AppCompatActivity {
 
         CONTEXT = this.getApplicationContext();
 
+        //the model's debug messages go to logcat
+        DebugLog.setSink(new DebugLog.Sink() {
+            @Override
+            public void d(String tag, String message) {
+                Log.d(tag, message);
+            }
+        });
+
         notebook  = Notebook.getInstance();
 
         //make the pages-listing activity
@@ -20,9 +20,11 @@ import com.luxlunaris.openarticlereader.R;
 import com.luxlunaris.openarticlereader.control.classes.Notebook;
 import com.luxlunaris.openarticlereader.control.classes.ProxyNotebookListener;
 import com.luxlunaris.openarticlereader.control.interfaces.NotebookListener;
+import com.luxlunaris.openarticlereader.control.interfaces.Pageable;
+import com.luxlunaris.openarticlereader.model.classes.DownloadExecutor;
 import com.luxlunaris.openarticlereader.model.interfaces.Page;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Random;
 
 /**
@@ -41,15 +43,20 @@ public class PagesActivity extends ColorActivity  implements NotebookListener, Y
      */
     transient LinearLayout pagesLinLayout;
 
+    /**
+     * This activity's position among the notebook's pages.
+     */
+    transient Pageable.Cursor cursor;
+
     /**
      * How many pages are loaded in a batch
      */
     final int PAGES_IN_A_BATCH = 10; //too small makes it impossible to reach the bottom
 
     /**
-     * The page fragments that are on-screen
+     * The page fragments that are on-screen, by page name
      */
-    transient ArrayList<PageFragment> pageFragments;
+    transient HashMap<String, PageFragment> pageFragments;
 
     /**
      * Keeps track of changes happening to pages while
@@ -94,9 +101,10 @@ public class PagesActivity extends ColorActivity  implements NotebookListener, Y
         pagesLinLayout = findViewById(R.id.pages_linear_layout);
 
         //initialize list to store fragments
-        pageFragments = new ArrayList<>();
+        pageFragments = new HashMap<>();
 
         //load first block of pages
+        cursor = notebook.newCursor();
         loadNextPagesBlock();
 
         //defines what the activity does when scrolling occurs
@@ -125,10 +133,10 @@ public class PagesActivity extends ColorActivity  implements NotebookListener, Y
     public void onTextInputted(String tag, String userResponse) {
         switch (tag){
             case SINGLE_DOWNLOAD:
-                notebook.download(userResponse);
+                notebook.download(userResponse, DownloadExecutor.Priority.INTERACTIVE);
                 break;
             case DOWNLOAD_FROM_SOURCE:
-                notebook.downloadAll(userResponse);
+                notebook.downloadAll(userResponse, DownloadExecutor.Priority.BULK);
                 break;
         }
     }
@@ -158,10 +166,9 @@ public class PagesActivity extends ColorActivity  implements NotebookListener, Y
     private PageFragment getFragment(Page page){
 
         //check if it's "equal" to an already existing one
-        for(PageFragment pgFrag : pageFragments){
-            if(pgFrag.getPage().getName().equals(page.getName())){
-                return pgFrag;
-            }
+        PageFragment pgFrag = pageFragments.get(page.getName());
+        if(pgFrag!=null){
+            return pgFrag;
         }
         //create a new fragment
         return PageFragment.newInstance(page);
@@ -200,7 +207,7 @@ public class PagesActivity extends ColorActivity  implements NotebookListener, Y
         }
 
         //add the page fragment to the fragment's list
-        pageFragments.add(pgFrag);
+        pageFragments.put(page.getName(), pgFrag);
     }
 
 
@@ -223,7 +230,7 @@ public class PagesActivity extends ColorActivity  implements NotebookListener, Y
      * Loads the next block of page fragments
      */
     private void loadNextPagesBlock(){
-       loadPages(notebook.getNext(PAGES_IN_A_BATCH));
+       loadPages(notebook.getNext(cursor, PAGES_IN_A_BATCH));
     }
 
     /**
@@ -242,8 +249,9 @@ public class PagesActivity extends ColorActivity  implements NotebookListener, Y
         //forget about all fragments
         pageFragments.clear();
 
-        //tell the notebook that you want to start over cycling through pages.
-        notebook.rewind();
+        //start over cycling through pages.
+        notebook.discard(cursor);
+        cursor = notebook.newCursor();
     }
 
 
@@ -252,9 +260,10 @@ public class PagesActivity extends ColorActivity  implements NotebookListener, Y
      * @param page
      */
     private void removeFragment(Page page){
-        PageFragment frag = getFragment(page);
-        pageFragments.remove(frag);
-        removeFragment(frag);
+        PageFragment frag = pageFragments.remove(page.getName());
+        if(frag!=null){
+            removeFragment(frag);
+        }
     }
 
     /**
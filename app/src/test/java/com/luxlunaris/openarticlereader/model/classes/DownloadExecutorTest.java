@@ -0,0 +1,99 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadExecutorTest {
+
+    /**
+     * Lets the blocking tasks finish.
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown(){
+        release.countDown();
+    }
+
+    /**
+     * A task that runs until released, telling when it starts.
+     */
+    private class BlockingTask extends DownloadExecutor.Task {
+
+        final CountDownLatch started = new CountDownLatch(1);
+
+        BlockingTask(String url, DownloadExecutor.Priority priority){
+            super(url, priority);
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                //(done)
+            }
+        }
+
+        boolean hasStarted() throws InterruptedException {
+            return started.await(2, TimeUnit.SECONDS);
+        }
+
+        boolean hasntStarted() throws InterruptedException {
+            return !started.await(200, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Test
+    public void interactiveTaskGoesOneAboveThePerHostLimit() throws InterruptedException {
+
+        DownloadExecutor executor = new DownloadExecutor(4, 1);
+
+        BlockingTask crawled = new BlockingTask("http://example.com/1", DownloadExecutor.Priority.BULK);
+        BlockingTask crawledToo = new BlockingTask("http://example.com/2", DownloadExecutor.Priority.BULK);
+        executor.submit(crawled);
+        executor.submit(crawledToo);
+        assertTrue(crawled.hasStarted());
+
+        //the host is busy with the crawl, but the user's download starts anyway
+        BlockingTask interactive = new BlockingTask("http://example.com/article", DownloadExecutor.Priority.INTERACTIVE);
+        executor.submit(interactive);
+        assertTrue(interactive.hasStarted());
+
+        //only one above the limit
+        BlockingTask interactiveToo = new BlockingTask("http://example.com/other", DownloadExecutor.Priority.INTERACTIVE);
+        executor.submit(interactiveToo);
+        assertTrue(interactiveToo.hasntStarted());
+        assertTrue(crawledToo.hasntStarted());
+        assertEquals(2, executor.getRunning().size());
+        assertEquals(2, executor.getQueued().size());
+
+        //another host isn't affected
+        BlockingTask elsewhere = new BlockingTask("http://example.org/", DownloadExecutor.Priority.BULK);
+        executor.submit(elsewhere);
+        assertTrue(elsewhere.hasStarted());
+    }
+
+    @Test
+    public void otherPrioritiesKeepToThePerHostLimit() throws InterruptedException {
+
+        DownloadExecutor executor = new DownloadExecutor(4, 1);
+
+        BlockingTask first = new BlockingTask("http://example.com/1", DownloadExecutor.Priority.BULK);
+        BlockingTask second = new BlockingTask("http://example.com/2", DownloadExecutor.Priority.REFRESH);
+        executor.submit(first);
+        assertTrue(first.hasStarted());
+        executor.submit(second);
+        assertTrue(second.hasntStarted());
+        assertFalse(executor.getQueued().isEmpty());
+    }
+
+}
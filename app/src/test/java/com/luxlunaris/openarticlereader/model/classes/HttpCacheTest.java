@@ -0,0 +1,248 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+
+    /**
+     * What the stub server serves: a body and its validators (null for none).
+     */
+    private volatile String body;
+    private volatile String etag;
+    private volatile String lastModified;
+    private volatile String cacheControl;
+
+    /**
+     * The requests it got (their conditional headers) and its responses' status codes.
+     */
+    private final List<String> ifNoneMatch = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> ifModifiedSince = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Integer> statusCodes = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private final LinkedBlockingQueue<WebsiteData> downloaded = new LinkedBlockingQueue<>();
+
+    private Downloader downloader;
+    private HttpCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+
+                String requestEtag = exchange.getRequestHeaders().getFirst("If-None-Match");
+                String requestDate = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+                ifNoneMatch.add(requestEtag);
+                ifModifiedSince.add(requestDate);
+
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                if(etag!=null){
+                    exchange.getResponseHeaders().set("ETag", etag);
+                }
+                if(lastModified!=null){
+                    exchange.getResponseHeaders().set("Last-Modified", lastModified);
+                }
+                if(cacheControl!=null){
+                    exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+                }
+
+                boolean notModified = requestEtag!=null? requestEtag.equals(etag)
+                        : requestDate!=null && requestDate.equals(lastModified);
+                if(notModified){
+                    statusCodes.add(304);
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+
+                byte[] bytes = body.getBytes("UTF-8");
+                statusCodes.add(200);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try(OutputStream out = exchange.getResponseBody()){
+                    out.write(bytes);
+                }
+            }
+        });
+        server.start();
+
+        cache = new HttpCache(tmp.newFolder().getPath(), 1024*1024);
+        downloader = new Downloader(tmp.newFolder().getPath(), 2, 2, 1024*1024, 1024*1024);
+        downloader.setCache(cache);
+        downloader.addListener(new Downloader.WebUser() {
+            @Override
+            public boolean onDownloadReady(WebsiteData data) {
+                downloaded.add(data);
+                return true;
+            }
+
+            @Override
+            public boolean isSaved(String url) {
+                return false;
+            }
+        });
+    }
+
+    @After
+    public void tearDown(){
+        server.stop(0);
+    }
+
+    private String url(){
+        return "http://127.0.0.1:"+server.getAddress().getPort()+"/article";
+    }
+
+    private static String page(String text){
+        return "<html><body><p>"+text+"</p></body></html>";
+    }
+
+    /**
+     * Download the stub's page, and get the text of its document.
+     */
+    private String download() throws InterruptedException {
+        downloader.download(url(), true, DownloadExecutor.Priority.INTERACTIVE);
+        WebsiteData data = downloaded.poll(10, TimeUnit.SECONDS);
+        assertNotNull("not downloaded", data);
+        return data.doc.select("p").text();
+    }
+
+    @Test
+    public void etagIsRevalidated() throws InterruptedException {
+
+        body = page("first");
+        etag = "\"v1\"";
+
+        assertEquals("first", download());
+        assertNotNull(cache.get(url()));
+
+        //not modified: the cached copy is used
+        body = page("should not be sent");
+        assertEquals("first", download());
+        assertEquals("\"v1\"", ifNoneMatch.get(1));
+        assertEquals(304, (int) statusCodes.get(1));
+
+        //modified: the new copy replaces it
+        body = page("second");
+        etag = "\"v2\"";
+        assertEquals("second", download());
+        assertEquals(200, (int) statusCodes.get(2));
+        assertEquals("\"v2\"", cache.get(url()).etag);
+    }
+
+    @Test
+    public void lastModifiedIsRevalidated() throws InterruptedException {
+
+        body = page("dated");
+        lastModified = "Tue, 01 Jun 2021 10:00:00 GMT";
+
+        assertEquals("dated", download());
+        assertNull(ifModifiedSince.get(0));
+
+        body = page("should not be sent");
+        assertEquals("dated", download());
+        assertEquals("Tue, 01 Jun 2021 10:00:00 GMT", ifModifiedSince.get(1));
+        assertNull(ifNoneMatch.get(1));
+        assertEquals(304, (int) statusCodes.get(1));
+    }
+
+    @Test
+    public void responsesThatCantBeRevalidatedOrStoredArentCached() throws InterruptedException {
+
+        body = page("no validators");
+        assertEquals("no validators", download());
+        assertNull(cache.get(url()));
+
+        etag = "\"v1\"";
+        cacheControl = "no-store";
+        assertEquals("no validators", download());
+        assertNull(cache.get(url()));
+        assertNull(ifNoneMatch.get(1));
+    }
+
+    private static InputStream bytes(int size){
+        return new ByteArrayInputStream(new byte[size]);
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+
+        HttpCache cache = new HttpCache(tmp.newFolder().getPath(), 1000);
+        cache.put("http://a", null, "\"a\"", null, null, bytes(400));
+        cache.put("http://b", null, "\"b\"", null, null, bytes(400));
+
+        //a gets used: b is now the least recently used
+        assertNotNull(cache.get("http://a"));
+        cache.put("http://c", null, "\"c\"", null, null, bytes(400));
+
+        assertNull(cache.get("http://b"));
+        assertNotNull(cache.get("http://a"));
+        assertNotNull(cache.get("http://c"));
+        assertEquals(800, cache.getTotalBytes());
+
+        //too large for the cache altogether
+        assertNull(cache.put("http://d", null, "\"d\"", null, null, bytes(2000)));
+        assertEquals(800, cache.getTotalBytes());
+    }
+
+    @Test
+    public void reloadedCacheKeepsItsEntriesInOrderOfUse() throws IOException {
+
+        File dir = tmp.newFolder();
+        HttpCache cache = new HttpCache(dir.getPath(), 1000);
+        HttpCache.Entry a = cache.put("http://a", "http://a/final", "\"a\"", null, "utf-8", bytes(400));
+        HttpCache.Entry b = cache.put("http://b", null, null, "Tue, 01 Jun 2021 10:00:00 GMT", null, bytes(400));
+
+        //the last use is the time of the meta file: b was used before a
+        long now = System.currentTimeMillis();
+        assertTrue(b.getMeta().setLastModified(now-60000));
+        assertTrue(a.getMeta().setLastModified(now-30000));
+
+        //leftovers of an interrupted put, and a body without its meta file
+        assertTrue(new File(dir, "x_1.tmp").createNewFile());
+        assertTrue(new File(dir, "orphan.body").createNewFile());
+
+        HttpCache reloaded = new HttpCache(dir.getPath(), 1000);
+        assertEquals(800, reloaded.getTotalBytes());
+        HttpCache.Entry entry = reloaded.get("http://a");
+        assertEquals("http://a/final", entry.finalUrl);
+        assertEquals("\"a\"", entry.etag);
+        assertEquals("utf-8", entry.charset);
+        assertEquals(4, dir.list().length);
+
+        reloaded.put("http://c", null, "\"c\"", null, null, bytes(400));
+        assertNull(reloaded.get("http://b"));
+        assertNotNull(reloaded.get("http://a"));
+    }
+
+}
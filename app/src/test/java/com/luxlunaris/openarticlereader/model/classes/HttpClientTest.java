@@ -0,0 +1,178 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpClientTest {
+
+    private HttpServer server;
+    private HttpClient client;
+
+    /**
+     * The body the stub server sends (gzipped if the path says so).
+     */
+    private volatile byte[] body;
+
+    /**
+     * The client's port of each request (the same port means the same connection),
+     * and whether each response's body got sent to the end.
+     */
+    private final List<Integer> ports = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Boolean> sent = Collections.synchronizedList(new ArrayList<Boolean>());
+
+    @Before
+    public void setUp() throws IOException {
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+
+                ports.add(exchange.getRemoteAddress().getPort());
+
+                byte[] bytes = body;
+                if(exchange.getRequestURI().getPath().equals("/gzip")){
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    try(GZIPOutputStream out = new GZIPOutputStream(compressed)){
+                        out.write(bytes);
+                    }
+                    bytes = compressed.toByteArray();
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try(OutputStream out = exchange.getResponseBody()){
+                    //(in small pieces, so that a dropped connection gets noticed)
+                    for(int i=0; i<bytes.length; i+=1024){
+                        out.write(bytes, i, Math.min(1024, bytes.length-i));
+                    }
+                    sent.add(true);
+                }catch (IOException e){
+                    //the client dropped the connection
+                    sent.add(false);
+                }
+            }
+        });
+        server.start();
+
+        client = new HttpClient(5000, 5000);
+    }
+
+    @After
+    public void tearDown(){
+        server.stop(0);
+    }
+
+    private String url(String path){
+        return "http://127.0.0.1:"+server.getAddress().getPort()+path;
+    }
+
+    private static byte[] bytes(int size){
+        byte[] bytes = new byte[size];
+        for(int i=0; i<size; i++){
+            bytes[i] = (byte) (i%251);
+        }
+        return bytes;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while((read = in.read(buffer))!=-1){
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Make a request, read the first bytes of its body, and close it.
+     */
+    private void readSomeAndClose(String path) throws IOException {
+        HttpClient.Response response = client.get(url(path), null, true);
+        try{
+            assertEquals(10, response.body().read(new byte[10]));
+        }finally {
+            response.close();
+        }
+    }
+
+    private void readAllAndClose(String path) throws IOException {
+        HttpClient.Response response = client.get(url(path), null, true);
+        try{
+            assertArrayEquals(body, readAll(response.body()));
+        }finally {
+            response.close();
+        }
+    }
+
+    @Test
+    public void compressedBodyIsDecoded() throws IOException {
+        body = bytes(100000);
+        HttpClient.Response response = client.get(url("/gzip"), null, true);
+        try{
+            assertTrue(response.isEncoded());
+            assertEquals(-1, response.contentLength());
+            assertEquals("utf-8", response.charset());
+            assertArrayEquals(body, readAll(response.body()));
+        }finally {
+            response.close();
+        }
+    }
+
+    @Test
+    public void smallRestIsDrainedAndTheConnectionReused() throws IOException {
+        body = bytes(20000);
+        readSomeAndClose("/plain");
+        readAllAndClose("/plain");
+        assertEquals(ports.get(0), ports.get(1));
+    }
+
+    @Test
+    public void largeRestIsntReadAndTheConnectionIsDropped() throws IOException {
+        body = bytes(8*1024*1024);
+        readSomeAndClose("/plain");
+
+        body = bytes(1000);
+        readAllAndClose("/plain");
+        assertNotEquals(ports.get(0), ports.get(1));
+        assertFalse(sent.get(0));
+    }
+
+    @Test
+    public void abortedResponseDropsTheConnection() throws IOException {
+        //(the JDK's connection still drains a small body in the background, and reuses it)
+        body = bytes(8*1024*1024);
+        HttpClient.Response response = client.get(url("/plain"), null, true);
+        response.abort();
+        //(does nothing now)
+        response.close();
+
+        body = bytes(1000);
+        readAllAndClose("/plain");
+        assertNotEquals(ports.get(0), ports.get(1));
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.luxlunaris.openarticlereader.model.services.KeywordMatcher;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InvertedIndexTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static HashMap<String, String> texts(String... nameTextPairs){
+        HashMap<String, String> texts = new HashMap<>();
+        for(int i=0; i<nameTextPairs.length; i+=2){
+            texts.put(nameTextPairs[i], nameTextPairs[i+1]);
+        }
+        return texts;
+    }
+
+    private static HashSet<String> search(InvertedIndex index, String... keywords){
+        return new HashSet<>(Arrays.asList(index.search(keywords)));
+    }
+
+    private static HashSet<String> set(String... names){
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    @Test
+    public void reopenedIndexKeepsDocsAndPostings() throws IOException {
+        String dir = tmp.newFolder().getPath();
+
+        InvertedIndex index = new InvertedIndex(dir);
+        index.addAll(texts("a", "the quick brown fox", "b", "the lazy dog"));
+        index.update(Collections.<String, String>emptyMap(), Collections.singletonList("b"));
+
+        InvertedIndex reopened = new InvertedIndex(dir);
+        assertTrue(reopened.contains("a"));
+        assertFalse(reopened.contains("b"));
+        assertEquals(set("a"), search(reopened, "the"));
+        assertEquals(set(), search(reopened, "lazy"));
+    }
+
+    @Test
+    public void uncommittedBatchIsForgottenAsAWhole() throws IOException {
+        File dir = tmp.newFolder();
+
+        InvertedIndex index = new InvertedIndex(dir.getPath());
+        index.addAll(texts("a", "first batch"));
+        index.addAll(texts("b", "second batch"));
+
+        //crash before the second segment's dictionary got renamed into place
+        File dict = new File(dir, "1.dict");
+        assertTrue(dict.renameTo(new File(dir, "1.dict.tmp")));
+
+        //the page isn't half-indexed: it's missing, so it gets indexed again
+        InvertedIndex reopened = new InvertedIndex(dir.getPath());
+        assertTrue(reopened.contains("a"));
+        assertFalse(reopened.contains("b"));
+
+        reopened.addAll(texts("b", "second batch again"));
+        assertEquals(set("a", "b"), search(reopened, "batch"));
+        assertEquals(set("b"), search(new InvertedIndex(dir.getPath()), "again"));
+    }
+
+    @Test
+    public void mergeDropsDeadDocsAndSurvivesReopening() throws IOException {
+        File dir = tmp.newFolder();
+
+        InvertedIndex index = new InvertedIndex(dir.getPath());
+        index.addAll(texts("kept", "permanent text"));
+        for(int i=0; i<12; i++){
+            index.addAll(texts("edited", "version"+i));
+        }
+        index.update(Collections.<String, String>emptyMap(), Collections.singletonList("kept"));
+        index.merge();
+
+        assertEquals(1, dir.listFiles((d, name) -> name.endsWith(".dict")).length);
+        assertEquals(set(), search(index, "permanent"));
+        assertEquals(set(), search(index, "version3"));
+        assertEquals(set("edited"), search(index, "version11"));
+
+        InvertedIndex reopened = new InvertedIndex(dir.getPath());
+        assertFalse(reopened.contains("kept"));
+        assertEquals(set("edited"), search(reopened, "version11"));
+
+        //new doc ids don't collide with the ones of the merged segment
+        reopened.addAll(texts("new", "fresh words"));
+        assertEquals(set("new"), search(new InvertedIndex(dir.getPath()), "fresh"));
+        assertEquals(set("edited"), search(new InvertedIndex(dir.getPath()), "version11"));
+    }
+
+    @Test
+    public void stampsTellWhichPagesChangedSinceIndexed() throws IOException {
+        String dir = tmp.newFolder().getPath();
+
+        HashMap<String, Long> stamps = new HashMap<>();
+        stamps.put("a", 1000L);
+        stamps.put("b", 2000L);
+        InvertedIndex index = new InvertedIndex(dir);
+        index.addAll(texts("a", "one", "b", "two"), stamps);
+
+        assertEquals(1000L, new InvertedIndex(dir).getStamp("a"));
+        assertEquals(-1L, index.getStamp("missing"));
+
+        stamps.clear();
+        stamps.put("a", 3000L);
+        index.addAll(texts("a", "three"), stamps);
+        index.merge();
+
+        InvertedIndex reopened = new InvertedIndex(dir);
+        assertEquals(3000L, reopened.getStamp("a"));
+        assertEquals(2000L, reopened.getStamp("b"));
+        assertEquals(set("a", "b"), new HashSet<>(reopened.getNames()));
+    }
+
+    @Test
+    public void unionMergesManyListsWithoutDuplicates(){
+        ArrayList<int[]> lists = new ArrayList<>();
+        lists.add(new int[]{1, 4, 9});
+        lists.add(new int[]{});
+        lists.add(new int[]{2, 4, 10, 11});
+        lists.add(new int[]{0, 1, 2, 3});
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 9, 10, 11}, InvertedIndex.union(lists));
+        assertArrayEquals(new int[0], InvertedIndex.union(new ArrayList<int[]>()));
+    }
+
+    @Test
+    public void keywordsMatchBeginningsOfTerms() throws IOException {
+        InvertedIndex index = new InvertedIndex(tmp.newFolder().getPath());
+        index.addAll(texts("a", "Documentation of the parser", "b", "a MENTOR's notes", "c", "Unrelated"));
+        assertEquals(set("a"), search(index, "doc"));
+        assertEquals(set("a"), search(index, "DOCUMENTATION", "pars"));
+        assertEquals(set("b"), search(index, "ment"));
+        assertEquals(set(), search(index, "ation"));
+        assertEquals(set(), search(index, "xyz"));
+    }
+
+    @Test
+    public void onlyTheLastTermOfAKeywordIsAPrefix() throws IOException {
+        InvertedIndex index = new InvertedIndex(tmp.newFolder().getPath());
+        index.addAll(texts("a", "Written in C++ and Java", "b", "Compilers for COBOL", "c", "e-mail the editor"));
+        assertEquals(set("a"), search(index, "c++"));
+        assertEquals(set("a", "b"), search(index, "c"));
+        assertEquals(set("c"), search(index, "e-mail"));
+        assertEquals(set("c"), search(index, "e-ma"));
+        assertEquals(set(), search(index, "ed-mail"));
+    }
+
+    @Test
+    public void indexAgreesWithKeywordMatcher() throws IOException {
+
+        HashMap<String, String> texts = texts(
+                "1", "The quick brown fox jumps over the lazy dog",
+                "2", "Über-fast Grüße aus München, 2021 edition",
+                "3", "Inverted indexes map terms to posting lists",
+                "4", "FOXES and dogs: a 2nd look at quickness",
+                "5", "");
+
+        InvertedIndex index = new InvertedIndex(tmp.newFolder().getPath());
+        index.addAll(texts);
+
+        String[][] queries = {
+                {"fox"}, {"quick", "dog"}, {"grü"}, {"MÜNCHEN"}, {"202"},
+                {"in", "li"}, {"nothing"}, {"the", "ov"}, {"2nd"}, {"Ü"}
+        };
+
+        for(String[] query : queries){
+            KeywordMatcher matcher = new KeywordMatcher(query);
+            HashSet<String> scanned = new HashSet<>();
+            for(String name : texts.keySet()){
+                if(matcher.matchesAll(texts.get(name))){
+                    scanned.add(name);
+                }
+            }
+            assertEquals(Arrays.toString(query), scanned, search(index, query));
+        }
+    }
+
+}
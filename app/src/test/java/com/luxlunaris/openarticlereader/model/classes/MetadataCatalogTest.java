@@ -0,0 +1,113 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.luxlunaris.openarticlereader.model.services.FileIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataCatalogTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void splitUnescapesFields(){
+        StringBuilder record = new StringBuilder();
+        MetadataCatalog.appendRecord(record, 'S', "page", "key", "a\tb\\c\nd");
+        String line = record.substring(0, record.length()-1);
+        assertArrayEquals(new String[]{"S", "page", "key", "a\tb\\c\nd"}, MetadataCatalog.split(line));
+    }
+
+    @Test
+    public void splitRejectsBadEscapes(){
+        assertNull(MetadataCatalog.split("S\tpage\tkey\tvalue\\"));
+        assertNull(MetadataCatalog.split("S\tpage\tkey\tva\\xlue"));
+    }
+
+    @Test
+    public void malformedRecordsAreSkipped() throws IOException {
+
+        File root = tmp.newFolder();
+        File dir = new File(root, "metadata_catalog");
+        dir.mkdirs();
+
+        try(Writer out = new OutputStreamWriter(new FileOutputStream(new File(dir, "log")), "UTF-8")){
+            out.write("S\tp\tgood\tyes\n");
+            //too few, too many fields
+            out.write("S\tp\tshort\n");
+            out.write("S\tp\tlong\tx\ty\n");
+            //a bad escape, and a record cut short after a backslash
+            out.write("S\tp\tescape\tbad\\q\n");
+            out.write("D\tp\textra\n");
+            out.write("P\tq\tx\n");
+            out.write("S\tp\tcut\tvalue\\");
+        }
+
+        MetadataCatalog catalog = MetadataCatalog.open(root.getPath());
+        assertEquals("yes", catalog.get("p", "good"));
+        assertNull(catalog.get("p", "short"));
+        assertNull(catalog.get("p", "long"));
+        assertNull(catalog.get("p", "escape"));
+        assertNull(catalog.get("p", "cut"));
+        assertArrayEquals(new String[]{"good"}, catalog.getTagNames("p"));
+        assertEquals(0, catalog.getTagNames("q").length);
+    }
+
+    @Test
+    public void tornLastRecordIsCutOff() throws IOException {
+
+        File root = tmp.newFolder();
+        File dir = new File(root, "metadata_catalog");
+        dir.mkdirs();
+        File log = new File(dir, "log");
+
+        //the value got cut short, but the record still has all of its fields
+        FileIO.write(log.getPath(), "S\tp\tgood\tyes\nS\tp\ttorn\tval");
+
+        MetadataCatalog catalog = MetadataCatalog.open(root.getPath());
+        assertEquals("yes", catalog.get("p", "good"));
+        assertNull(catalog.get("p", "torn"));
+
+        //the next record starts on a line of its own
+        catalog.set("p", "next", "v");
+        catalog.flush();
+        assertEquals("S\tp\tgood\tyes\nS\tp\tnext\tv\n", FileIO.read(log.getPath()));
+    }
+
+    @Test
+    public void legacyFilesAreImportedWhenTheCatalogIsFirstOpened() throws IOException {
+
+        File root = tmp.newFolder();
+        File page = new File(root, "pages"+File.separator+"a");
+        File subPage = new File(page, "b");
+        subPage.mkdirs();
+
+        LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+        tags.put("title", "A");
+        FileIO.write(new File(page, MetadataCatalog.LEGACY_FILE_NAME).getPath(), MetadataFile.formatTags(tags));
+        tags.put("title", "B");
+        FileIO.write(new File(subPage, MetadataCatalog.LEGACY_FILE_NAME).getPath(), MetadataFile.formatTags(tags));
+
+        MetadataCatalog catalog = MetadataCatalog.open(root.getPath());
+        assertEquals("A", catalog.get("pages"+File.separator+"a", "title"));
+        assertEquals("B", catalog.get("pages"+File.separator+"a"+File.separator+"b", "title"));
+        assertFalse(new File(page, MetadataCatalog.LEGACY_FILE_NAME).exists());
+        assertFalse(new File(subPage, MetadataCatalog.LEGACY_FILE_NAME).exists());
+        assertTrue(new File(root, "metadata_catalog"+File.separator+"migrated").exists());
+    }
+
+}
@@ -0,0 +1,302 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResumableTransferTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+    private HttpClient client;
+    private File dir;
+
+    /**
+     * What the stub server serves.
+     */
+    private volatile byte[] body;
+    private volatile String etag;
+
+    /**
+     * If >=0, the next response stops after this many bytes of its body (then it's reset).
+     */
+    private volatile int cutAfter = -1;
+
+    /**
+     * How many bytes more than it has the next response claims (then it's reset).
+     */
+    private volatile int overstate = 0;
+
+    /**
+     * If true, a range request gets a 206 for the whole body instead.
+     */
+    private volatile boolean wrongRange = false;
+
+    /**
+     * The Range and If-Range headers of the requests, and the status codes of the responses.
+     */
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> ifRanges = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Integer> statusCodes = Collections.synchronizedList(new ArrayList<Integer>());
+
+    @Before
+    public void setUp() throws IOException {
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+                ranges.add(range);
+                ifRanges.add(ifRange);
+
+                exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+                exchange.getResponseHeaders().set("ETag", etag);
+
+                //serve the rest only if the resource is still the one the client has
+                int start = 0;
+                if(range!=null && (ifRange==null || ifRange.equals(etag))){
+                    start = wrongRange? 0 : Integer.parseInt(range.substring("bytes=".length(), range.length()-1));
+                    if(start>=body.length){
+                        exchange.getResponseHeaders().set("Content-Range", "bytes */"+body.length);
+                        respond(exchange, 416, new byte[0]);
+                        return;
+                    }
+                    exchange.getResponseHeaders().set("Content-Range", "bytes "+start+"-"+(body.length-1)+"/"+body.length);
+                    respond(exchange, 206, Arrays.copyOfRange(body, start, body.length));
+                    return;
+                }
+                respond(exchange, 200, body);
+            }
+        });
+        server.start();
+
+        client = new HttpClient(5000, 5000);
+        dir = tmp.newFolder();
+    }
+
+    /**
+     * Send a response, or just part of its body if it has to be cut short.
+     */
+    private void respond(HttpExchange exchange, int statusCode, byte[] bytes) throws IOException {
+        statusCodes.add(statusCode);
+        if(bytes.length==0){
+            exchange.sendResponseHeaders(statusCode, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(statusCode, bytes.length+overstate);
+        int length = cutAfter>=0? Math.min(cutAfter, bytes.length) : bytes.length;
+        cutAfter = -1;
+        overstate = 0;
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes, 0, length);
+        out.flush();
+        //(if it's cut short, the connection gets closed)
+        exchange.close();
+    }
+
+    @After
+    public void tearDown(){
+        server.stop(0);
+    }
+
+    private String url(){
+        return "http://127.0.0.1:"+server.getAddress().getPort()+"/file";
+    }
+
+    private static byte[] bytes(int size, int seed){
+        byte[] bytes = new byte[size];
+        for(int i=0; i<size; i++){
+            bytes[i] = (byte) (i*seed+i/7);
+        }
+        return bytes;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        try(InputStream in = new FileInputStream(file)){
+            int offset = 0;
+            int read;
+            while(offset<bytes.length && (read = in.read(bytes, offset, bytes.length-offset))!=-1){
+                offset += read;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Run a transfer of the stub's url.
+     * @return the complete file, or null.
+     */
+    private File transfer() throws IOException, InterruptedException {
+        return transfer(null);
+    }
+
+    private File transfer(ByteBudget budget) throws IOException, InterruptedException {
+        ResumableTransfer transfer = new ResumableTransfer(client, url(), dir);
+        try{
+            return transfer.run(null, true, 1024*1024, budget);
+        }finally {
+            transfer.close();
+        }
+    }
+
+    /**
+     * Run a transfer that gets cut short.
+     */
+    private void interruptedTransfer(int cutAfter) throws InterruptedException {
+        this.cutAfter = cutAfter;
+        interruptedTransfer();
+    }
+
+    private void interruptedTransfer() throws InterruptedException {
+        try{
+            transfer();
+            fail("not interrupted");
+        }catch (IOException e){
+            //what arrived is kept
+        }
+    }
+
+    private boolean hasPart(){
+        return new File(dir, HttpCache.keyOf(url())+ResumableTransfer.PART_EXTENSION).exists();
+    }
+
+    @Test
+    public void interruptedTransferResumesWithRangeAndIfRange() throws IOException, InterruptedException {
+
+        body = bytes(20000, 3);
+        etag = "\"v1\"";
+
+        interruptedTransfer(7000);
+        assertNull(ranges.get(0));
+
+        File file = transfer();
+        assertEquals("bytes=7000-", ranges.get(1));
+        assertEquals("\"v1\"", ifRanges.get(1));
+        assertEquals(206, (int) statusCodes.get(1));
+        assertArrayEquals(body, read(file));
+        assertFalse(hasPart());
+    }
+
+    @Test
+    public void completePartGets416AndIsUsedAsItIs() throws IOException, InterruptedException {
+
+        body = bytes(5000, 5);
+        etag = "\"v1\"";
+
+        //all of the body arrived, but the transfer broke off before it knew
+        overstate = 10;
+        interruptedTransfer();
+
+        File file = transfer();
+        assertEquals("bytes=5000-", ranges.get(1));
+        assertEquals(416, (int) statusCodes.get(1));
+        assertArrayEquals(body, read(file));
+        assertFalse(hasPart());
+    }
+
+    @Test
+    public void changedValidatorStartsOver() throws IOException, InterruptedException {
+
+        body = bytes(20000, 3);
+        etag = "\"v1\"";
+        interruptedTransfer(7000);
+
+        //the resource changed meanwhile: If-Range doesn't match, the whole new body comes
+        body = bytes(12000, 11);
+        etag = "\"v2\"";
+
+        File file = transfer();
+        assertEquals("bytes=7000-", ranges.get(1));
+        assertEquals("\"v1\"", ifRanges.get(1));
+        assertEquals(200, (int) statusCodes.get(1));
+        assertArrayEquals(body, read(file));
+    }
+
+    @Test
+    public void wrongRangeIsRejectedAndForgotten() throws IOException, InterruptedException {
+
+        body = bytes(20000, 3);
+        etag = "\"v1\"";
+        interruptedTransfer(7000);
+
+        wrongRange = true;
+        try{
+            transfer();
+            fail("wrong range accepted");
+        }catch (IOException e){
+            //expected
+        }
+        assertEquals(206, (int) statusCodes.get(1));
+        assertFalse(hasPart());
+
+        //the next transfer starts over
+        wrongRange = false;
+        File file = transfer();
+        assertNull(ranges.get(2));
+        assertArrayEquals(body, read(file));
+    }
+
+    @Test
+    public void budgetIsReservedBeforeConnecting() throws Exception {
+
+        body = bytes(20000, 3);
+        etag = "\"v1\"";
+
+        final ByteBudget budget = new ByteBudget(1024*1024);
+        long held = budget.acquire(1024*1024);
+
+        final File[] file = new File[1];
+        Thread thread = new Thread(){
+            public void run(){
+                try {
+                    file[0] = transfer(budget);
+                } catch (IOException | InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        thread.start();
+
+        //no request while it waits for the budget
+        thread.join(300);
+        assertTrue(thread.isAlive());
+        assertTrue(ranges.isEmpty());
+
+        budget.release(held);
+        thread.join(5000);
+        assertArrayEquals(body, read(file[0]));
+        assertEquals(1024*1024, budget.getAvailable());
+    }
+
+}
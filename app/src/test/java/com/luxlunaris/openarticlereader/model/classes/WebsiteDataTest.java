@@ -0,0 +1,92 @@
+package com.luxlunaris.openarticlereader.model.classes;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WebsiteDataTest {
+
+    @Test
+    public void imagesAreHandedOverInDocumentOrder(){
+
+        WebsiteData data = new WebsiteData("http://example.com", null, 4, false);
+        final ArrayList<File> received = new ArrayList<>();
+        data.setImage(1, new File("1"));
+        data.setImageListener(new WebsiteData.ImageListener() {
+            @Override
+            public void onImagesReady(List<File> images) {
+                received.addAll(images);
+            }
+        });
+
+        //the second image waits for the first
+        assertTrue(received.isEmpty());
+        data.setImage(0, new File("0"));
+        data.setImage(3, new File("3"));
+        assertEquals(2, received.size());
+
+        //a failed image is skipped
+        data.setImage(2, null);
+        assertEquals(3, received.size());
+        assertEquals(new File("3"), received.get(2));
+        assertTrue(data.isComplete());
+    }
+
+    @Test
+    public void listenerIsCalledOutsideOfTheLockAndInOrder() throws InterruptedException {
+
+        final int numOfImages = 200;
+        final WebsiteData data = new WebsiteData("http://example.com", null, numOfImages, false);
+        final List<File> received = Collections.synchronizedList(new ArrayList<File>());
+        final boolean[] lockHeld = {false};
+
+        data.setImageListener(new WebsiteData.ImageListener() {
+            @Override
+            public void onImagesReady(List<File> images) {
+                lockHeld[0] |= Thread.holdsLock(data);
+                received.addAll(images);
+                Thread.yield();
+            }
+        });
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ArrayList<Thread> threads = new ArrayList<>();
+        for(int t=0; t<4; t++){
+            final int first = t;
+            Thread thread = new Thread(){
+                public void run(){
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for(int i=numOfImages-1-first; i>=0; i-=4){
+                        data.setImage(i, new File(i+""));
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for(Thread thread : threads){
+            thread.join();
+        }
+
+        assertFalse(lockHeld[0]);
+        assertTrue(data.isComplete());
+        assertEquals(numOfImages, received.size());
+        for(int i=0; i<numOfImages; i++){
+            assertEquals(new File(i+""), received.get(i));
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.luxlunaris.openarticlereader.model.services;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * HtmlToText must produce the same text as
+ * Html.fromHtml(html, Html.FROM_HTML_MODE_LEGACY).toString():
+ * the expected strings are what it returns for the same html.
+ */
+public class HtmlToTextTest {
+
+    private static void assertRendersAs(String expected, String html){
+        assertEquals(html, expected, HtmlToText.convert(html));
+    }
+
+    @Test
+    public void blockTagsAreSeparatedByTwoNewlines(){
+        assertRendersAs("First\n\nSecond\n\n", "<p>First</p><p>Second</p>");
+        assertRendersAs("a\n\nb", "<div>a</div>b");
+        assertRendersAs("q\n\nafter", "<blockquote>q</blockquote>after");
+        assertRendersAs("Title\n\nSome bold and italic text.\n\n", "<h1>Title</h1><p>Some <b>bold</b> and <i>italic</i> text.</p>");
+        assertRendersAs("a \n\n", "<p> a </p>");
+    }
+
+    @Test
+    public void brIsANewline(){
+        assertRendersAs("Line one\nLine two\nLine three", "Line one<br>Line two<br/>Line three");
+        assertRendersAs("a\n\n", "<p>a<br></p>");
+        assertRendersAs("a\n\n\nb", "<p>a<br><br><br></p>b");
+    }
+
+    @Test
+    public void imgIsAnObjectReplacementCharacter(){
+        assertRendersAs("Before\uFFFCAfter", "Before<img src=\"x.png\">After");
+        assertRendersAs("\uFFFC\n\n\uFFFC\n\n", "<p><img src='a.png'></p><p><img src='b.png'/></p>");
+        assertRendersAs("\uFFFC", "<img alt=\"a > b\" src=\"c.png\">");
+    }
+
+    @Test
+    public void entitiesAreDecoded(){
+        assertRendersAs("Tom & Jerry <3 \"q\" 'a'", "Tom &amp; Jerry &lt;3 &quot;q&quot; &apos;a&apos;");
+        assertRendersAs("AB a\u00A0b", "&#65;&#x42; a&nbsp;b");
+        assertRendersAs("\uD83D\uDE00", "&#x1F600;");
+        assertRendersAs("AT&T", "AT&T");
+        assertRendersAs("a > b", "a &gt; b");
+    }
+
+    @Test
+    public void nestedListsAreBlocks(){
+        assertRendersAs("one\n\ntwo\n\ntwo.a\n\ntwo.b\n\nthree\n\n",
+                "<ul><li>one</li><li>two<ul><li>two.a</li><li>two.b</li></ul></li><li>three</li></ul>");
+    }
+
+    @Test
+    public void whitespaceCollapses(){
+        assertRendersAs("a b ", "  a \n\n  b  ");
+        assertRendersAs("a b", "a <b> </b>b");
+    }
+
+    @Test
+    public void commentsAndDeclarationsProduceNoText(){
+        assertRendersAs("ab", "a<!-- <p>hidden</p> -->b");
+        assertRendersAs("x", "<!DOCTYPE html>x");
+    }
+
+    @Test
+    public void readerAndStringGiveTheSameText() throws IOException {
+        String html = "<p>Some &amp; text<br><img src='a'></p><ul><li>item</li></ul>";
+        assertEquals(HtmlToText.convert(html), HtmlToText.convert(new StringReader(html)));
+    }
+
+}
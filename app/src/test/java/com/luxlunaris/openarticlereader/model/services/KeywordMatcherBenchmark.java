@@ -0,0 +1,102 @@
+package com.luxlunaris.openarticlereader.model.services;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Micro-benchmark of KeywordMatcher against the baseline (KeywordMatcherTest.containsAllBaseline):
+ * a batch of page sized texts, one query shared by all of them (as in Notebook's fallback scan),
+ * for queries of 1 to 16 keywords. The last keyword of each query is in none of the texts,
+ * so that every text is read to the end. Once with ASCII texts, once with a few accented
+ * words in them (the baseline's toUpperCase() is much slower on those).
+ *
+ * It's not part of the unit tests: run its main() by hand.
+ */
+public class KeywordMatcherBenchmark {
+
+    private static final String[] WORDS = {"lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do",
+            "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua", "enim"};
+
+    private static final String[] ACCENTED_WORDS = {"Über", "Grüße", "café"};
+
+    private static final String[] KEYWORDS = {"Dolor", "ELIT", "sit amet", "consectetur adipiscing", "tempor", "magna aliqua",
+            "ut labore", "Enim", "eiusmod", "incididunt ut", "lorem ipsum", "do", "sed", "et dolore", "aliqua"};
+
+    private static final int TEXTS = 200;
+    private static final int TEXT_LENGTH = 20000;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args){
+        run("ASCII", texts(false));
+        run("accented", texts(true));
+    }
+
+    private static String[] texts(boolean accented){
+        Random random = new Random(7);
+        String[] texts = new String[TEXTS];
+        for(int t=0; t<texts.length; t++){
+            StringBuilder text = new StringBuilder();
+            while(text.length()<TEXT_LENGTH){
+                //(one word in 50 is accented)
+                boolean accent = accented && random.nextInt(50)==0;
+                text.append(accent? ACCENTED_WORDS[random.nextInt(ACCENTED_WORDS.length)] : WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            texts[t] = text.toString();
+        }
+        return texts;
+    }
+
+    private static void run(String name, String[] texts){
+
+        System.out.println("KeywordMatcher benchmark, "+name+" ("+TEXTS+" texts x "+TEXT_LENGTH/1000+"k chars), microseconds per text:");
+        System.out.println("keywords\tbaseline\tmatcher");
+
+        for(int k=1; k<=KEYWORDS.length+1; k*=2){
+
+            String[] keywords = Arrays.copyOf(KEYWORDS, k);
+            keywords[k-1] = "nowhere";
+
+            //(the best of a few runs, after warming up)
+            long baseline = Long.MAX_VALUE;
+            long matcher = Long.MAX_VALUE;
+            for(int run=0; run<RUNS; run++){
+
+                long start = System.nanoTime();
+                int baselineHits = runBaseline(texts, keywords);
+                baseline = Math.min(baseline, System.nanoTime()-start);
+
+                start = System.nanoTime();
+                int matcherHits = runMatcher(texts, keywords);
+                matcher = Math.min(matcher, System.nanoTime()-start);
+
+                if(baselineHits!=matcherHits){
+                    throw new AssertionError("different results for "+Arrays.toString(keywords));
+                }
+            }
+
+            System.out.println(k+"\t\t"+baseline/1000/TEXTS+"\t\t"+matcher/1000/TEXTS);
+        }
+    }
+
+    private static int runBaseline(String[] texts, String[] keywords){
+        int hits = 0;
+        for(String text : texts){
+            if(KeywordMatcherTest.containsAllBaseline(text, keywords)){
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static int runMatcher(String[] texts, String[] keywords){
+        KeywordMatcher matcher = new KeywordMatcher(keywords);
+        int hits = 0;
+        for(String text : texts){
+            if(matcher.matchesAll(text)){
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.luxlunaris.openarticlereader.model.services;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeywordMatcherTest {
+
+    /**
+     * What AbstractPage.contains() did before KeywordMatcher:
+     * upper-case the text, then scan it once per keyword.
+     * (Also used by KeywordMatcherBenchmark).
+     */
+    static boolean containsAllBaseline(String text, String[] keywords){
+        text = text.toUpperCase();
+        for(String keyword : keywords){
+            if(!text.contains(keyword.toUpperCase())){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String text, String... keywords){
+        return new KeywordMatcher(keywords).matchesAll(text);
+    }
+
+    @Test
+    public void allKeywordsMustBePresent(){
+        assertTrue(matches("the quick brown fox", "quick", "fox"));
+        assertFalse(matches("the quick brown fox", "quick", "dog"));
+        assertFalse(matches("", "a"));
+        assertTrue(matches("any text"));
+    }
+
+    @Test
+    public void overlappingKeywordsAreAllFound(){
+        //one inside another, sharing a prefix, sharing a suffix, overlapping each other
+        assertTrue(matches("she sells", "he", "she", "s"));
+        assertTrue(matches("abcd", "abc", "bcd"));
+        assertTrue(matches("ushers", "hers", "she", "he", "us"));
+        assertTrue(matches("aaaa", "aa", "aaa", "aaaa"));
+        assertFalse(matches("aaa", "aa", "aaaa"));
+        //found only by following a failure link
+        assertTrue(matches("abxabcd", "abcd", "bx"));
+    }
+
+    @Test
+    public void caseIsFolded(){
+        assertTrue(matches("Hello World", "hello", "WORLD"));
+        assertTrue(matches("GRÜSSE aus MÜNCHEN", "grüsse", "München"));
+        assertTrue(matches("straße", "STRASSE".substring(0, 4)));
+        assertFalse(matches("Hello", "hellO!"));
+    }
+
+    @Test
+    public void emptyAndDuplicateKeywordsDontMatter(){
+        assertTrue(matches("abc", "", "b", "B", "b"));
+        assertFalse(matches("abc", "", "d", "d"));
+        assertTrue(matches("", "", ""));
+    }
+
+    @Test
+    public void moreThan64Keywords(){
+        String[] keywords = new String[100];
+        StringBuilder text = new StringBuilder();
+        for(int i=0; i<keywords.length; i++){
+            keywords[i] = "k"+i+"x";
+            text.append("K").append(i).append("X ");
+        }
+        assertTrue(matches(text.toString(), keywords));
+        keywords[99] = "missing";
+        assertFalse(matches(text.toString(), keywords));
+    }
+
+    @Test
+    public void longTextsAndOtherCharSequences(){
+        //a keyword across the chunks the text is read in
+        StringBuilder text = new StringBuilder();
+        while(text.length()<4090){
+            text.append("lorem ");
+        }
+        text.append("keyword");
+        assertTrue(new KeywordMatcher(new String[]{"lorem", "KEYWORD"}).matchesAll(text));
+        assertTrue(matches(text.toString(), "lorem", "KEYWORD"));
+        assertFalse(new KeywordMatcher(new String[]{"lorem", "keywords"}).matchesAll(text));
+    }
+
+    @Test
+    public void agreesWithTheBaselineOnRandomInputs(){
+        Random random = new Random(42);
+        String alphabet = "abAB c";
+        for(int round=0; round<2000; round++){
+            String text = randomString(random, alphabet, random.nextInt(40));
+            String[] keywords = new String[1+random.nextInt(4)];
+            for(int i=0; i<keywords.length; i++){
+                keywords[i] = randomString(random, alphabet, random.nextInt(4));
+            }
+            assertEquals(text+" "+java.util.Arrays.toString(keywords),
+                    containsAllBaseline(text, keywords), matches(text, keywords));
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length){
+        char[] chars = new char[length];
+        for(int i=0; i<length; i++){
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.luxlunaris.openarticlereader.model.services;
+
+/**
+ * Micro-benchmark of TokenFinder against the split() based search that it replaced,
+ * and against indexOf (TokenFinderTest's baselines): all of the positions of a common
+ * word in a page sized text.
+ *
+ * It's not part of the unit tests: run its main() by hand.
+ */
+public class TokenFinderBenchmark {
+
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args){
+
+        String text = TokenFinderTest.loremIpsum(200000);
+        String token = "DOLOR";
+
+        for(int warmup=0; warmup<5; warmup++){
+            TokenFinderTest.splitBaseline(token, text);
+            TokenFinderTest.indexOfBaseline(token, text);
+            new TokenFinder(token).findAll(text, new IntList());
+        }
+
+        long start = System.nanoTime();
+        for(int i=0; i<ROUNDS; i++){
+            TokenFinderTest.splitBaseline(token, text);
+        }
+        long split = System.nanoTime()-start;
+
+        start = System.nanoTime();
+        for(int i=0; i<ROUNDS; i++){
+            TokenFinderTest.indexOfBaseline(token, text);
+        }
+        long indexOf = System.nanoTime()-start;
+
+        TokenFinder finder = new TokenFinder(token);
+        IntList positions = new IntList();
+        start = System.nanoTime();
+        for(int i=0; i<ROUNDS; i++){
+            positions.clear();
+            finder.findAll(text, positions);
+        }
+        long tokenFinder = System.nanoTime()-start;
+
+        System.out.println("TokenFinder benchmark ("+ROUNDS+" x "+text.length()/1000+"k chars, "+positions.size()+" matches): "
+                +"split "+split/1000000+" ms, indexOf "+indexOf/1000000+" ms, TokenFinder "+tokenFinder/1000000+" ms");
+    }
+
+}
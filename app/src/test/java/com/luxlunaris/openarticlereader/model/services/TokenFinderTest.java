@@ -0,0 +1,154 @@
+package com.luxlunaris.openarticlereader.model.services;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TokenFinderTest {
+
+    private static int[] positions(String token, String text){
+        IntList positions = new IntList();
+        int count = new TokenFinder(token).findAll(text, positions);
+        assertEquals(count, positions.size());
+        return positions.toArray();
+    }
+
+    /**
+     * A plain indexOf search over upper-cased copies, resuming after each match.
+     * (Also used by TokenFinderBenchmark).
+     */
+    static int[] indexOfBaseline(String token, String text){
+        ArrayList<Integer> found = new ArrayList<>();
+        text = text.toUpperCase();
+        token = token.toUpperCase();
+        for(int i = text.indexOf(token); i>=0; i = text.indexOf(token, i+token.length())){
+            found.add(i);
+        }
+        int[] positions = new int[found.size()];
+        for(int i=0; i<positions.length; i++){
+            positions[i] = found.get(i);
+        }
+        return positions;
+    }
+
+    /**
+     * What AbstractPage did before TokenFinder: split the upper-cased
+     * text by the token (as a regex), and add up the lengths of the parts.
+     * (Also used by TokenFinderBenchmark).
+     */
+    static int[] splitBaseline(String token, String text){
+        token = token.toUpperCase();
+        String[] parts = text.toUpperCase().split(token);
+        ArrayList<Integer> found = new ArrayList<>();
+        found.add(parts[0].length());
+        for(int i=1; i<parts.length-1; i++){
+            found.add(found.get(found.size()-1)+token.length()+parts[i].length());
+        }
+        int[] positions = new int[found.size()];
+        for(int i=0; i<positions.length; i++){
+            positions[i] = found.get(i);
+        }
+        return positions;
+    }
+
+    @Test
+    public void findsTheStartOfEachMatch(){
+        assertArrayEquals(new int[]{4, 16}, positions("cat", "the cat and the cat."));
+        assertArrayEquals(new int[]{0, 17}, positions("cat", "cat and the dog, cat"));
+        assertArrayEquals(new int[0], positions("cat", "dog"));
+        assertArrayEquals(new int[0], positions("cat", "ca"));
+        assertArrayEquals(new int[0], positions("cat", ""));
+    }
+
+    @Test
+    public void matchesDontOverlap(){
+        assertArrayEquals(new int[]{0, 2}, positions("aa", "aaaaa"));
+        assertArrayEquals(new int[]{0, 4}, positions("abab", "abababab"));
+        //a partial match that fails still finds the one right after it
+        assertArrayEquals(new int[]{2}, positions("aab", "aaaab"));
+        assertArrayEquals(new int[]{3}, positions("abac", "abaabac"));
+    }
+
+    @Test
+    public void caseIsFolded(){
+        assertArrayEquals(new int[]{0, 6, 12}, positions("word", "WORD, Word, word"));
+        assertArrayEquals(new int[]{5}, positions("MÜNCHEN", "nach München"));
+    }
+
+    @Test
+    public void tokenIsLiteralNotARegex(){
+        assertArrayEquals(new int[]{3}, positions("a.b", "axba.b"));
+        assertArrayEquals(new int[]{1}, positions("(", "a(b"));
+        assertArrayEquals(new int[]{0, 3}, positions("c++", "c++c++"));
+    }
+
+    @Test
+    public void emptyTokenIsNeverFound(){
+        assertEquals(0, new TokenFinder("").count("anything"));
+        assertArrayEquals(new int[0], positions("", "anything"));
+    }
+
+    @Test
+    public void countAgreesWithFindAll(){
+        TokenFinder finder = new TokenFinder("ab");
+        String text = "ab xab abab ba";
+        assertEquals(positions("ab", text).length, finder.count(text));
+        assertEquals(4, finder.count(text));
+    }
+
+    @Test
+    public void findAllAppendsToTheList(){
+        IntList positions = new IntList();
+        positions.add(-1);
+        new TokenFinder("x").findAll("axbx", positions);
+        assertArrayEquals(new int[]{-1, 1, 3}, positions.toArray());
+    }
+
+    @Test
+    public void agreesWithIndexOfOnRandomInputs(){
+        Random random = new Random(42);
+        String alphabet = "abAB";
+        for(int round=0; round<2000; round++){
+            String text = randomString(random, alphabet, random.nextInt(40));
+            String token = randomString(random, alphabet, 1+random.nextInt(4));
+            assertArrayEquals(token+" in "+text, indexOfBaseline(token, text), positions(token, text));
+        }
+    }
+
+    @Test
+    public void agreesWithTheOldSplitSearchOnAPage(){
+        //(the old search misses a match at the very end of the text: there's none here)
+        String text = loremIpsum(200000);
+        assertArrayEquals(splitBaseline("DOLOR", text), positions("DOLOR", text));
+        assertArrayEquals(indexOfBaseline("DOLOR", text), positions("DOLOR", text));
+    }
+
+    /**
+     * A text made of random common words.
+     * (Also used by TokenFinderBenchmark).
+     * @param length
+     * @return
+     */
+    static String loremIpsum(int length){
+        Random random = new Random(7);
+        String[] words = {"Lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do"};
+        StringBuilder builder = new StringBuilder();
+        while(builder.length()<length){
+            builder.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return builder.toString();
+    }
+
+    private static String randomString(Random random, String alphabet, int length){
+        char[] chars = new char[length];
+        for(int i=0; i<length; i++){
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
+}